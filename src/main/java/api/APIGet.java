@@ -6,13 +6,17 @@ import lombok.NoArgsConstructor;
 import lombok.extern.java.Log;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 import util.APICache;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 @Log
 @NoArgsConstructor
@@ -21,8 +25,11 @@ public class APIGet {
     /* unused */
     private static final String CARD_URL = "https://api.pokemontcg.io/v2/cards/";
     private static final String CARD_ENDPOINT = "/cards/{cardId}";
+    // Page size limit of the API, and so the most ids one lookup can resolve
+    public static final int ID_LOOKUP_MAX_BATCH = 250;
     private static final String apiKey = getSecret();
     private static final WebClient client = WebClient.builder()
+            .clientConnector(new ReactorClientHttpConnector(HttpTransport.httpClient()))
             .baseUrl(API_BASE_URL)
             .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
             .defaultHeader("X-Api-Key", apiKey)
@@ -83,6 +90,61 @@ public class APIGet {
                 });
         return cardMono.toFuture();
     }
+    /**
+     * Looks up several cards by id in one request.
+     * Cards already in the APICache are not requested again; the others are fetched with a single
+     * "id:a OR id:b" query, so a bulk import needs one round trip per batch instead of one per card.
+     * Unlike the other queries, a failed request completes the future exceptionally, so the caller
+     * can tell a failed lookup from ids that do not exist. More than ID_LOOKUP_MAX_BATCH uncached ids
+     * are split into several requests, which run side by side.
+     *
+     * @param cardIds The ids to look up
+     * @return The cards found, in no particular order; unknown ids are simply missing
+     */
+    public static CompletableFuture<List<Card>> queryCardsByIds(Collection<String> cardIds) {
+        List<Card> found = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String cardId : cardIds) {
+            Card cachedCard = APICache.getCardById(cardId);
+            if (cachedCard != null) {
+                found.add(cachedCard);
+            } else {
+                missing.add(cardId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(found);
+        }
+        if (missing.size() > ID_LOOKUP_MAX_BATCH) {
+            List<CompletableFuture<List<Card>>> parts = new ArrayList<>();
+            for (int from = 0; from < missing.size(); from += ID_LOOKUP_MAX_BATCH) {
+                parts.add(queryCardsByIds(missing.subList(from, Math.min(from + ID_LOOKUP_MAX_BATCH, missing.size()))));
+            }
+            return CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).thenApply(done -> {
+                for (CompletableFuture<List<Card>> part : parts) {
+                    found.addAll(part.join());
+                }
+                return found;
+            });
+        }
+        String queryString = missing.stream().map(id -> "id:\"" + id + "\"").collect(Collectors.joining(" OR "));
+        Mono<List<Card>> cardMono = client.get().uri(uriBuilder -> uriBuilder.path("/cards")
+                        .queryParam("q", "{q}").queryParam("pageSize", ID_LOOKUP_MAX_BATCH).build(queryString))
+                .retrieve()
+                .bodyToMono(ListResponseWrapper.class).map(ListResponseWrapper::getData)
+                .map(results -> {
+                    for (Card card : results) {
+                        APICache.putCard(card.getId(), card);
+                    }
+                    log.info(String.format("Fetched %s of %s requested cards by id", results.size(), missing.size()));
+                    found.addAll(results);
+                    return found;
+                })
+                .defaultIfEmpty(found)
+                .doOnError(e -> log.log(Level.SEVERE, "Error looking up cards by id: {0}", e.getMessage()));
+        return cardMono.toFuture();
+    }
+
     // Find by set
     public static CompletableFuture<List<Card>> queryCardsBySet(String set) {
         List<Card> cachedResults = APICache.getSearchResults(set);
@@ -0,0 +1,62 @@
+package api;
+
+import config.AppProperties;
+import io.netty.channel.ChannelOption;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Shared non-blocking HTTP transport.
+ * The API client and image downloads use the same pool of keep-alive connections and event loops.
+ */
+public class HttpTransport {
+    private static final ConnectionProvider connectionProvider = ConnectionProvider.builder("collection-tracker")
+            .maxConnections(AppProperties.getInt("http.pool.maxConnections", 32))
+            .maxIdleTime(Duration.ofSeconds(AppProperties.getLong("http.pool.maxIdleSeconds", 30)))
+            .pendingAcquireTimeout(Duration.ofSeconds(AppProperties.getLong("http.pool.acquireTimeoutSeconds", 30)))
+            .build();
+
+    private static final HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, AppProperties.getInt("http.connectTimeoutMillis", 5000))
+            .keepAlive(true)
+            .followRedirect(true);
+
+    private static final HttpClient imageClient = httpClient
+            .responseTimeout(Duration.ofMillis(AppProperties.getLong("images.responseTimeoutMillis", 10000)));
+
+    /**
+     * Gets the pooled client, for building WebClient connectors on top of it.
+     *
+     * @return The shared HttpClient
+     */
+    public static HttpClient httpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Sets up the connection pool, event loops and DNS resolver up front, so the first request does not
+     * pay for them. Blocks until done, meant for a background thread at startup.
+     */
+    public static void warmUp() {
+        httpClient.warmup().block();
+    }
+
+    /**
+     * Downloads the raw bytes of an image without blocking the calling thread.
+     *
+     * @param url The URL of the image
+     * @return A Mono emitting the response body, or an IOException for non-200 responses
+     */
+    public static Mono<byte[]> fetchBytes(String url) {
+        return imageClient.get().uri(url).responseSingle((response, body) -> {
+            if (response.status().code() != 200) {
+                return Mono.error(new IOException("HTTP " + response.status().code() + " for " + url));
+            }
+            return body.asByteArray();
+        });
+    }
+}
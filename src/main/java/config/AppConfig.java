@@ -1,10 +1,12 @@
 package config;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import database.SchemaMigrations;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
@@ -20,13 +22,31 @@ import java.util.Properties;
 @ComponentScan(basePackages = {"database", "api"})
 public class AppConfig {
 
-    @Bean
+    @Bean(destroyMethod = "close")
     public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName("org.h2.Driver");
-        dataSource.setUrl("jdbc:h2:file:./collectiondb;AUTO_SERVER=TRUE");
-        dataSource.setUsername("sa");
-        dataSource.setPassword("");
+        // Pooled, so repository calls reuse open H2 connections instead of opening a new one each time
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("collection-db");
+        config.setDriverClassName(AppProperties.getString("spring.datasource.driverClassName", "org.h2.Driver"));
+        // H2 caches prepared statements per connection, which now live as long as the pool keeps them
+        config.setJdbcUrl(AppProperties.getString("spring.datasource.url", "jdbc:h2:file:./collectiondb;AUTO_SERVER=TRUE")
+                + ";QUERY_CACHE_SIZE=" + AppProperties.getInt("db.statementCacheSize", 64));
+        config.setUsername(AppProperties.getString("spring.datasource.username", "sa"));
+        config.setPassword(AppProperties.getString("spring.datasource.password", ""));
+        config.setMaximumPoolSize(AppProperties.getInt("db.pool.maximumPoolSize", 4));
+        config.setMinimumIdle(AppProperties.getInt("db.pool.minimumIdle", 1));
+        config.setIdleTimeout(AppProperties.getLong("db.pool.idleTimeoutMillis", 600_000));
+        config.setMaxLifetime(AppProperties.getLong("db.pool.maxLifetimeMillis", 1_800_000));
+        config.setConnectionTimeout(AppProperties.getLong("db.pool.connectionTimeoutMillis", 10_000));
+        config.setValidationTimeout(AppProperties.getLong("db.pool.validationTimeoutMillis", 3_000));
+        config.setLeakDetectionThreshold(AppProperties.getLong("db.pool.leakDetectionThresholdMillis", 0));
+        // Transactions always start with autocommit off, Hibernate is told so below and skips switching it
+        config.setAutoCommit(false);
+        // Pool metrics (active, idle, pending connections) are published over JMX
+        config.setRegisterMbeans(true);
+        HikariDataSource dataSource = new HikariDataSource(config);
+        // The schema is owned by the versioned migrations, which run before Hibernate starts
+        SchemaMigrations.migrate(dataSource);
         return dataSource;
     }
 
@@ -37,14 +57,20 @@ public class AppConfig {
         em.setPackagesToScan("data");
 
         HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
-        vendorAdapter.setGenerateDdl(true);
+        vendorAdapter.setGenerateDdl(false);
         em.setJpaVendorAdapter(vendorAdapter);
 
         Properties properties = new Properties();
-        properties.setProperty("hibernate.hbm2ddl.auto", "update");
+        // No schema inspection or updates at startup, see SchemaMigrations
+        properties.setProperty("hibernate.hbm2ddl.auto", "none");
         properties.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
         properties.setProperty("hibernate.show_sql", "true");
         properties.setProperty("hibernate.format_sql", "true");
+        properties.setProperty("hibernate.connection.provider_disables_autocommit", "true");
+        // Inserts and updates are sent in JDBC batches, ordered by table so the batches stay long
+        properties.setProperty("hibernate.jdbc.batch_size", String.valueOf(AppProperties.getInt("db.jdbc.batchSize", 50)));
+        properties.setProperty("hibernate.order_inserts", "true");
+        properties.setProperty("hibernate.order_updates", "true");
         em.setJpaProperties(properties);
 
         return em;
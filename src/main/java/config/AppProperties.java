@@ -0,0 +1,97 @@
+package config;
+
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.logging.Level;
+
+/**
+ * Read-only access to the settings in application.properties.
+ * Any key can be overridden with a JVM system property of the same name,
+ * e.g. -Dimages.maxConcurrentDownloads=16.
+ */
+@Log
+public class AppProperties {
+    private static final String RESOURCE = "/application.properties";
+    private static final Properties properties = load();
+
+    private static Properties load() {
+        Properties loaded = new Properties();
+        try (InputStream in = AppProperties.class.getResourceAsStream(RESOURCE)) {
+            if (in != null) {
+                loaded.load(in);
+            } else {
+                log.warning("No " + RESOURCE + " on the classpath, using defaults.");
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to read " + RESOURCE + ", using defaults.", e);
+        }
+        return loaded;
+    }
+
+    /**
+     * Gets a string setting.
+     *
+     * @param key The property key
+     * @param defaultValue The value to use if the key is not set
+     * @return The configured value, or the default
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key, properties.getProperty(key));
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Gets an integer setting, falling back to the default if it is missing or not a number.
+     *
+     * @param key The property key
+     * @param defaultValue The value to use if the key is not set or invalid
+     * @return The configured value, or the default
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            log.warning("Invalid value '" + value + "' for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets a long setting, falling back to the default if it is missing or not a number.
+     *
+     * @param key The property key
+     * @param defaultValue The value to use if the key is not set or invalid
+     * @return The configured value, or the default
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            log.warning("Invalid value '" + value + "' for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets a boolean setting.
+     *
+     * @param key The property key
+     * @param defaultValue The value to use if the key is not set
+     * @return The configured value, or the default
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
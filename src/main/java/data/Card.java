@@ -20,11 +20,12 @@ public class Card {
     private String id;
     private String name;
     private String supertype;
-    @ElementCollection(fetch = FetchType.EAGER)
+    // Lazy, only the detail view needs them, see CardRepository.findDetailedById
+    @ElementCollection(fetch = FetchType.LAZY)
     @CollectionTable(name = "card_subtypes", joinColumns = @JoinColumn(name = "card_id"))
     @Column(name = "subtype")
     private List<String> subtypes;
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection(fetch = FetchType.LAZY)
     @CollectionTable(name = "card_types", joinColumns = @JoinColumn(name = "card_id"))
     @Column(name = "type")
     private List<String> types;
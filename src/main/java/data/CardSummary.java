@@ -0,0 +1,34 @@
+package data;
+
+import java.math.BigDecimal;
+
+/**
+ * The columns of a card that lists show, read without the card's element collections.
+ *
+ * @param id The card id
+ * @param name The card name
+ * @param setName The name of the card's set
+ * @param rarity The rarity
+ * @param smallImageUrl The URL of the small image
+ * @param averageSellPrice The average sell price, may be null
+ */
+public record CardSummary(String id, String name, String setName, String rarity, String smallImageUrl,
+                          BigDecimal averageSellPrice) {
+
+    /**
+     * Wraps the summary in a Card for the list views, with only these fields set.
+     * Load the full card before showing its details.
+     *
+     * @return A partial Card
+     */
+    public Card toCard() {
+        Card card = new Card();
+        card.setId(id);
+        card.setName(name);
+        card.setRarity(rarity);
+        card.setSetInfo(new SetInfo(null, setName, null));
+        card.setImageInfo(new ImageInfo(smallImageUrl, null));
+        card.setCardMarket(new CardMarket(new GermanPriceInfo(averageSellPrice)));
+        return card;
+    }
+}
@@ -0,0 +1,19 @@
+package data;
+
+import java.math.BigDecimal;
+
+/**
+ * A card price at a point in time.
+ *
+ * @param time The time, in epoch seconds
+ * @param cents The price, in cents
+ */
+public record PricePoint(long time, long cents) {
+
+    /**
+     * @return The price in euros
+     */
+    public BigDecimal price() {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
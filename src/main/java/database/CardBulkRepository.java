@@ -0,0 +1,33 @@
+package database;
+
+import data.Card;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Bulk writes for the CardRepository, implemented in CardBulkRepositoryImpl.
+ */
+public interface CardBulkRepository {
+
+    /**
+     * Inserts cards that are not in the collection yet, in one transaction.
+     * Unlike saveAll, which merges and so reads every card with an assigned id before writing it,
+     * the cards are persisted directly, and Hibernate sends the inserts in JDBC batches
+     * (see hibernate.jdbc.batch_size). The persistence context is cleared afterwards, so the
+     * cards do not pile up in memory over a large import.
+     *
+     * @param cards The cards to insert, none of them may be stored already
+     */
+    void insertAll(Collection<Card> cards);
+
+    /**
+     * Streams every stored card, with its subtypes and types, through a database cursor in id order.
+     * One query reads everything, the element collections as arrays per row, and only the rows being
+     * handed over are held in memory, however large the collection is. The cards are plain objects,
+     * not managed entities.
+     *
+     * @param action Called for each card, on the calling thread, inside the read transaction
+     */
+    void forEachCard(Consumer<Card> action);
+}
@@ -0,0 +1,98 @@
+package database;
+
+import config.AppProperties;
+import data.Card;
+import data.CardMarket;
+import data.GermanPriceInfo;
+import data.ImageInfo;
+import data.SetInfo;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Picked up by Spring Data as the implementation of CardBulkRepository for the CardRepository.
+ */
+public class CardBulkRepositoryImpl implements CardBulkRepository {
+    // The subtypes and types are read per row through the card_id indexes, not joined, so each card is one row
+    private static final String ALL_CARDS = "select c.id, c.name, c.supertype, c.number, c.rarity, "
+            + "c.setid, c.setname, c.series, c.image_small_url, c.image_large_url, c.averagesellprice, "
+            + "array(select s.subtype from card_subtypes s where s.card_id = c.id), "
+            + "array(select t.type from card_types t where t.card_id = c.id) "
+            + "from card c order by c.id";
+    // Embedded H2 builds the whole result before returning the first row unless its lazy execution is on,
+    // the fetch size alone does not make it stream
+    private static final String LAZY_ON = "set lazy_query_execution true";
+    private static final String LAZY_OFF = "set lazy_query_execution false";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void insertAll(Collection<Card> cards) {
+        for (Card card : cards) {
+            entityManager.persist(card);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachCard(Consumer<Card> action) {
+        int fetchSize = AppProperties.getInt("db.cursorFetchSize", 500);
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (Statement setting = connection.createStatement()) {
+                setting.execute(LAZY_ON);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(ALL_CARDS,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                try (ResultSet row = statement.executeQuery()) {
+                    while (row.next()) {
+                        Card card = new Card();
+                        card.setId(row.getString(1));
+                        card.setName(row.getString(2));
+                        card.setSupertype(row.getString(3));
+                        card.setNumber(row.getString(4));
+                        card.setRarity(row.getString(5));
+                        card.setSetInfo(new SetInfo(row.getString(6), row.getString(7), row.getString(8)));
+                        card.setImageInfo(new ImageInfo(row.getString(9), row.getString(10)));
+                        card.setCardMarket(new CardMarket(new GermanPriceInfo(row.getBigDecimal(11))));
+                        card.setSubtypes(strings(row.getArray(12)));
+                        card.setTypes(strings(row.getArray(13)));
+                        action.accept(card);
+                    }
+                }
+            } finally {
+                // The connection goes back to the pool, where other queries expect the default
+                try (Statement setting = connection.createStatement()) {
+                    setting.execute(LAZY_OFF);
+                }
+            }
+        });
+    }
+
+    private static List<String> strings(Array array) throws SQLException {
+        List<String> values = new ArrayList<>();
+        if (array != null) {
+            for (Object value : (Object[]) array.getArray()) {
+                values.add((String) value);
+            }
+            array.free();
+        }
+        return values;
+    }
+}
@@ -1,10 +1,96 @@
 package database;
 
 import data.Card;
+import data.CardSummary;
+import org.hibernate.Hibernate;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface CardRepository extends JpaRepository<Card, String> {
+public interface CardRepository extends JpaRepository<Card, String>, CardBulkRepository {
+
+    /**
+     * @return The ids of all cards in the collection, without loading the cards
+     */
+    @Query("select c.id from Card c")
+    List<String> findAllIds();
+
+    /**
+     * @return Every stored subtype as a pair of card id and subtype, read in one query
+     */
+    @Query("select c.id, s from Card c join c.subtypes s")
+    List<Object[]> findAllSubtypes();
+
+    /**
+     * @return Every stored type as a pair of card id and type, read in one query
+     */
+    @Query("select c.id, t from Card c join c.types t")
+    List<Object[]> findAllTypes();
+
+    /**
+     * @return Every stored set name as a pair of set name and series, one row per set
+     */
+    @Query("select distinct c.setInfo.setName, c.setInfo.series from Card c")
+    List<Object[]> findAllSetSeries();
+
+    /**
+     * Reads a page of card summaries, without touching the subtype and type tables.
+     *
+     * @param pageable The page, its sort properties refer to Card fields
+     * @return The summaries on that page
+     */
+    @Query("select new data.CardSummary(c.id, c.name, c.setInfo.setName, c.rarity, c.imageInfo.small, "
+            + "c.cardMarket.priceInfo.averageSellPrice) from Card c")
+    List<CardSummary> findSummaries(Pageable pageable);
+
+    /**
+     * Reads the card summaries following an id, for keyset pagination in id order.
+     * The database seeks to the id on the primary key index instead of counting past an offset.
+     *
+     * @param afterId The id to start after
+     * @param limit The maximum number of summaries to return
+     * @return The summaries of the cards with a greater id, in id order
+     */
+    @Query("select new data.CardSummary(c.id, c.name, c.setInfo.setName, c.rarity, c.imageInfo.small, "
+            + "c.cardMarket.priceInfo.averageSellPrice) from Card c where c.id > :afterId order by c.id")
+    List<CardSummary> findSummariesAfter(@Param("afterId") String afterId, Limit limit);
+
+    /**
+     * Loads a card with its subtypes and types, for the detail view.
+     * The two collections are read by key in the same transaction; fetching both in one join is not
+     * possible for bags and would multiply the rows anyway.
+     *
+     * @param id The card id
+     * @return The card, if it is in the collection
+     */
+    @Transactional(readOnly = true)
+    default Optional<Card> findDetailedById(String id) {
+        Optional<Card> card = findById(id);
+        card.ifPresent(found -> {
+            Hibernate.initialize(found.getSubtypes());
+            Hibernate.initialize(found.getTypes());
+        });
+        return card;
+    }
 
+    /**
+     * Saves and deletes cards in a single transaction.
+     *
+     * @param saves The cards to save
+     * @param deleteIds The ids of the cards to delete, ids that are not stored are ignored
+     */
+    @Transactional
+    default void saveAndDeleteAll(Collection<Card> saves, Collection<String> deleteIds) {
+        saveAll(saves);
+        deleteAllById(deleteIds);
+    }
 }
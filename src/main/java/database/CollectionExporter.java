@@ -0,0 +1,291 @@
+package database;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import data.Card;
+import lombok.extern.java.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+/**
+ * Writes the whole collection to a CSV or JSON Lines file.
+ * The cards are streamed from a database cursor straight into a buffered file, so memory use does not
+ * grow with the collection. JSON Lines files hold one card per line, in the same shape the API uses;
+ * CSV files have the CSV_COLUMNS header, with subtypes and types joined by "|" (see joinList).
+ * CollectionImporter reads both back.
+ */
+@Log
+public class CollectionExporter {
+    // The columns of a CSV export, in order
+    public static final List<String> CSV_COLUMNS = List.of("id", "name", "supertype", "subtypes", "types", "number",
+            "rarity", "set_id", "set_name", "series", "image_small", "image_large", "average_sell_price");
+    // Separates the values of list columns in a CSV export, a separator or backslash inside a value is escaped with a backslash
+    public static final String CSV_LIST_SEPARATOR = "|";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // Progress is reported every this many cards
+    private static final int PROGRESS_INTERVAL = 500;
+
+    private final CardRepository cardRepository;
+
+    /**
+     * File formats of an export.
+     */
+    public enum Format {
+        CSV, JSON_LINES;
+
+        /**
+         * @param file A file name
+         * @return JSON_LINES for .jsonl, .ndjson and .json files, CSV otherwise
+         */
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json") ? JSON_LINES : CSV;
+        }
+    }
+
+    /**
+     * Creates a new CollectionExporter.
+     *
+     * @param cardRepository The repository the cards are read from
+     */
+    public CollectionExporter(CardRepository cardRepository) {
+        this.cardRepository = cardRepository;
+    }
+
+    /**
+     * Writes every card in the collection to a file, replacing it.
+     *
+     * @param file The file to write
+     * @param format The file format
+     * @param progress Called with the number of cards written so far, every few hundred cards
+     * @return The number of cards written
+     * @throws IOException If the file cannot be written
+     */
+    public int export(Path file, Format format, IntConsumer progress) throws IOException {
+        long start = System.nanoTime();
+        int[] written = {0};
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_BYTES)) {
+            CardSink sink = format == Format.JSON_LINES ? new JsonLinesSink(out) : new CsvSink(out);
+            try {
+                cardRepository.forEachCard(card -> {
+                    try {
+                        sink.write(card);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    if (++written[0] % PROGRESS_INTERVAL == 0) {
+                        progress.accept(written[0]);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            sink.finish();
+        }
+        progress.accept(written[0]);
+        log.info("Exported " + written[0] + " cards to " + file + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return written[0];
+    }
+
+    private interface CardSink {
+        void write(Card card) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * One JSON object per line, written with the Jackson streaming generator.
+     */
+    private static final class JsonLinesSink implements CardSink {
+        private final JsonGenerator generator;
+
+        private JsonLinesSink(OutputStream out) throws IOException {
+            generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+            // The stream is closed by the exporter
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void write(Card card) throws IOException {
+            generator.writeStartObject();
+            writeString("id", card.getId());
+            writeString("name", card.getName());
+            writeString("supertype", card.getSupertype());
+            writeList("subtypes", card.getSubtypes());
+            writeList("types", card.getTypes());
+            writeString("number", card.getNumber());
+            writeString("rarity", card.getRarity());
+            if (card.getSetInfo() != null) {
+                generator.writeObjectFieldStart("set");
+                writeString("id", card.getSetInfo().getSetId());
+                writeString("name", card.getSetInfo().getSetName());
+                writeString("series", card.getSetInfo().getSeries());
+                generator.writeEndObject();
+            }
+            if (card.getImageInfo() != null) {
+                generator.writeObjectFieldStart("images");
+                writeString("small", card.getImageInfo().getSmall());
+                writeString("large", card.getImageInfo().getLarge());
+                generator.writeEndObject();
+            }
+            BigDecimal price = price(card);
+            if (price != null) {
+                generator.writeObjectFieldStart("cardmarket");
+                generator.writeObjectFieldStart("prices");
+                generator.writeNumberField("averageSellPrice", price);
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void writeString(String field, String value) throws IOException {
+            if (value != null) {
+                generator.writeStringField(field, value);
+            }
+        }
+
+        private void writeList(String field, List<String> values) throws IOException {
+            if (values != null && !values.isEmpty()) {
+                generator.writeArrayFieldStart(field);
+                for (String value : values) {
+                    generator.writeString(value);
+                }
+                generator.writeEndArray();
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * RFC 4180 CSV with a header line.
+     */
+    private static final class CsvSink implements CardSink {
+        private final Writer writer;
+        private final StringBuilder line = new StringBuilder(256);
+
+        private CsvSink(OutputStream out) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_BYTES);
+            writer.write(String.join(",", CSV_COLUMNS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(Card card) throws IOException {
+            line.setLength(0);
+            field(card.getId());
+            field(card.getName());
+            field(card.getSupertype());
+            field(joinList(card.getSubtypes()));
+            field(joinList(card.getTypes()));
+            field(card.getNumber());
+            field(card.getRarity());
+            field(card.getSetInfo() != null ? card.getSetInfo().getSetId() : null);
+            field(card.getSetInfo() != null ? card.getSetInfo().getSetName() : null);
+            field(card.getSetInfo() != null ? card.getSetInfo().getSeries() : null);
+            field(card.getImageInfo() != null ? card.getImageInfo().getSmall() : null);
+            field(card.getImageInfo() != null ? card.getImageInfo().getLarge() : null);
+            BigDecimal price = price(card);
+            field(price != null ? price.toPlainString() : null);
+            line.setLength(line.length() - 1); // Trailing comma
+            line.append("\r\n");
+            writer.append(line);
+        }
+
+        // Quoted only when needed, embedded quotes doubled
+        private void field(String value) {
+            if (value != null) {
+                if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                    line.append('"').append(value.replace("\"", "\"\"")).append('"');
+                } else {
+                    line.append(value);
+                }
+            }
+            line.append(',');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Joins the values of a CSV list column, escaping separators and backslashes inside them.
+     *
+     * @param values The values, may be null
+     * @return The column value, or null for no list
+     */
+    static String joinList(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (!joined.isEmpty()) {
+                joined.append(CSV_LIST_SEPARATOR);
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' || c == CSV_LIST_SEPARATOR.charAt(0)) {
+                    joined.append('\\');
+                }
+                joined.append(c);
+            }
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Splits a CSV list column written by joinList.
+     *
+     * @param joined The column value, may be null
+     * @return The values, empty for null or an empty column
+     */
+    static List<String> splitList(String joined) {
+        List<String> values = new ArrayList<>();
+        if (joined == null || joined.isEmpty()) {
+            return values;
+        }
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < joined.length(); i++) {
+            char c = joined.charAt(i);
+            if (c == '\\' && i + 1 < joined.length()) {
+                value.append(joined.charAt(++i));
+            } else if (c == CSV_LIST_SEPARATOR.charAt(0)) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static BigDecimal price(Card card) {
+        return card.getCardMarket() != null && card.getCardMarket().getPriceInfo() != null
+                ? card.getCardMarket().getPriceInfo().getAverageSellPrice() : null;
+    }
+}
@@ -0,0 +1,441 @@
+package database;
+
+import api.APIGet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import config.AppProperties;
+import data.Card;
+import data.CardMarket;
+import data.GermanPriceInfo;
+import data.ImageInfo;
+import data.SetInfo;
+import lombok.extern.java.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Adds many cards to the collection at once, from an export file or a list of card ids.
+ * Exports written by CollectionExporter are streamed, their cards need no lookups and only the ids
+ * read so far are kept in memory. Ids are resolved with batched API lookups, the next one running
+ * while a chunk is written. Either way the cards are inserted in chunks of one transaction each, every
+ * chunk sent to the database in JDBC batches. Queued collection changes are written before each chunk,
+ * so a card whose removal is still queued can be imported again. Cards that are already owned are
+ * skipped, and each committed chunk is added to the CollectionIndex and handed to a listener, so an
+ * import that fails halfway keeps what it wrote.
+ * Runs on the calling thread, which should not be the EDT.
+ */
+@Log
+public class CollectionImporter {
+    private final CardRepository cardRepository;
+    private final CollectionIndex collectionIndex;
+    private final CollectionWriter collectionWriter;
+    // Told about every committed chunk, to keep the other in-memory views of the collection in step
+    private final Consumer<List<Card>> chunkListener;
+    // Cards written per transaction
+    private final int chunkSize;
+    // Ids resolved per API request
+    private final int lookupBatchSize;
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Reports how far an import has got.
+     */
+    public interface ProgressListener {
+        /**
+         * @param processed The number of ids looked up so far, or of kilobytes read from an export file
+         * @param total The number of ids to look up, or the size of the export file in kilobytes
+         * @param imported The number of cards written so far
+         */
+        void progress(int processed, int total, int imported);
+    }
+
+    /**
+     * The outcome of an import.
+     *
+     * @param requested The number of distinct ids that were read
+     * @param imported The number of cards added to the collection
+     * @param alreadyOwned The number of ids that were in the collection already
+     * @param notFound The ids the API does not know, always empty for export files
+     */
+    public record ImportResult(int requested, int imported, int alreadyOwned, List<String> notFound) {
+    }
+
+    /**
+     * Creates a new CollectionImporter.
+     *
+     * @param cardRepository The repository the cards are inserted into
+     * @param collectionIndex The index of owned cards, kept in step with the import
+     * @param collectionWriter The write-behind queue of collection changes, flushed before every chunk
+     * @param chunkListener Called with the cards of every committed chunk, on the importing thread
+     */
+    public CollectionImporter(CardRepository cardRepository, CollectionIndex collectionIndex,
+                              CollectionWriter collectionWriter, Consumer<List<Card>> chunkListener) {
+        this.cardRepository = cardRepository;
+        this.collectionIndex = collectionIndex;
+        this.collectionWriter = collectionWriter;
+        this.chunkListener = chunkListener;
+        this.chunkSize = Math.max(1, AppProperties.getInt("collection.import.chunkSize", 500));
+        this.lookupBatchSize = Math.max(1, Math.min(APIGet.ID_LOOKUP_MAX_BATCH,
+                AppProperties.getInt("collection.import.lookupBatchSize", 100)));
+    }
+
+    /**
+     * Imports the cards in a file.
+     * JSON Lines files (.jsonl, .ndjson, .json) and CSV files with the CollectionExporter header are read
+     * as full cards, one record at a time; of several records with the same id the first one is imported.
+     * Any other file is read as a list of card ids, see readIds.
+     *
+     * @param file The file to import
+     * @param listener Told about the progress after every chunk
+     * @return What was imported
+     * @throws IOException If the file cannot be read or is malformed
+     */
+    public ImportResult importFile(Path file, ProgressListener listener) throws IOException {
+        CollectionExporter.Format format = CollectionExporter.Format.forFile(file);
+        if (format == CollectionExporter.Format.CSV && !hasExportHeader(file)) {
+            return importIds(readIds(file), listener);
+        }
+        long start = System.nanoTime();
+        int totalKilobytes = (int) Math.max(1, Files.size(file) / 1024);
+        int requested = 0;
+        int alreadyOwned = 0;
+        int imported = 0;
+        try (CountingInputStream counter = new CountingInputStream(Files.newInputStream(file));
+             InputStream in = new BufferedInputStream(counter, BUFFER_BYTES)) {
+            Iterator<Card> cards = format == CollectionExporter.Format.JSON_LINES
+                    ? JSON_MAPPER.readerFor(Card.class).readValues(in)
+                    : new CsvCards(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_BYTES));
+            // Every id read so far, so repeated records are neither counted nor imported twice
+            Set<String> seen = new HashSet<>();
+            List<Card> chunk = new ArrayList<>(chunkSize);
+            while (cards.hasNext()) {
+                Card card = cards.next();
+                if (card == null || card.getId() == null || card.getId().isBlank() || !seen.add(card.getId())) {
+                    continue;
+                }
+                if (collectionIndex.contains(card.getId())) {
+                    alreadyOwned++;
+                    continue;
+                }
+                chunk.add(card);
+                if (chunk.size() >= chunkSize) {
+                    WrittenChunk written = writeChunk(chunk);
+                    imported += written.imported();
+                    alreadyOwned += written.alreadyOwned();
+                    chunk = new ArrayList<>(chunkSize);
+                    listener.progress((int) (counter.count / 1024), totalKilobytes, imported);
+                }
+            }
+            requested = seen.size();
+            WrittenChunk written = writeChunk(chunk);
+            imported += written.imported();
+            alreadyOwned += written.alreadyOwned();
+        } catch (RuntimeJsonMappingException e) {
+            throw new IOException("Malformed JSON Lines file: " + e.getMessage(), e);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed price in CSV file: " + e.getMessage(), e);
+        }
+        listener.progress(totalKilobytes, totalKilobytes, imported);
+        log.info("Imported " + imported + " of " + requested + " cards from " + file + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return new ImportResult(requested, imported, alreadyOwned, List.of());
+    }
+
+    // True if the first line of the file is the header of a CollectionExporter CSV
+    private static boolean hasExportHeader(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            return header != null && header.strip().replace("\uFEFF", "")
+                    .equals(String.join(",", CollectionExporter.CSV_COLUMNS));
+        }
+    }
+
+    /**
+     * Reads card ids from a file, one per line.
+     * Blank lines and lines starting with # are skipped. Lines with several comma, semicolon or tab
+     * separated fields, such as a CSV export, contribute their first field, and a header line
+     * naming the "id" column is ignored.
+     *
+     * @param file The file to read
+     * @return The ids, in file order
+     * @throws IOException If the file cannot be read
+     */
+    public static List<String> readIds(Path file) throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String id = trimmed.split("[,;\t]", 2)[0].strip();
+            if (id.length() >= 2 && id.startsWith("\"") && id.endsWith("\"")) {
+                id = id.substring(1, id.length() - 1).strip();
+            }
+            if (!id.isEmpty() && !id.equalsIgnoreCase("id")) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Imports the cards with the given ids.
+     *
+     * @param cardIds The ids to import, duplicates are imported once
+     * @param listener Told about the progress after every lookup and every chunk
+     * @return What was imported
+     * @throws CompletionException If a lookup fails, the chunks written until then stay imported
+     */
+    public ImportResult importIds(Collection<String> cardIds, ProgressListener listener) {
+        Set<String> distinct = new LinkedHashSet<>(cardIds);
+        List<String> toLookUp = new ArrayList<>();
+        for (String id : distinct) {
+            if (!collectionIndex.contains(id)) {
+                toLookUp.add(id);
+            }
+        }
+        int alreadyOwned = distinct.size() - toLookUp.size();
+        int total = toLookUp.size();
+        log.info("Importing " + total + " cards, " + alreadyOwned + " of " + distinct.size() + " ids are already owned");
+        long start = System.nanoTime();
+
+        Set<String> resolved = new LinkedHashSet<>();
+        List<Card> chunk = new ArrayList<>(chunkSize);
+        int processed = 0;
+        int imported = 0;
+        CompletableFuture<List<Card>> nextLookup = lookup(toLookUp, 0);
+        while (nextLookup != null) {
+            List<Card> cards = nextLookup.join();
+            int batchEnd = Math.min(processed + lookupBatchSize, total);
+            // Start the following lookup before writing, so the API and the database work in parallel
+            nextLookup = lookup(toLookUp, batchEnd);
+            processed = batchEnd;
+            for (Card card : cards) {
+                if (card != null && resolved.add(card.getId())) {
+                    chunk.add(card);
+                }
+            }
+            if (chunk.size() >= chunkSize || nextLookup == null) {
+                WrittenChunk written = writeChunk(chunk);
+                imported += written.imported();
+                alreadyOwned += written.alreadyOwned();
+                chunk = new ArrayList<>(chunkSize);
+            }
+            listener.progress(processed, total, imported);
+        }
+
+        List<String> notFound = new ArrayList<>();
+        for (String id : toLookUp) {
+            if (!resolved.contains(id)) {
+                notFound.add(id);
+            }
+        }
+        log.info("Imported " + imported + " cards in " + (System.nanoTime() - start) / 1_000_000 + " ms, "
+                + notFound.size() + " ids were not found");
+        return new ImportResult(distinct.size(), imported, alreadyOwned, notFound);
+    }
+
+    private CompletableFuture<List<Card>> lookup(List<String> ids, int from) {
+        if (from >= ids.size()) {
+            return null;
+        }
+        return APIGet.queryCardsByIds(ids.subList(from, Math.min(from + lookupBatchSize, ids.size())));
+    }
+
+    /**
+     * Inserts one chunk in its own transaction and records it in the index.
+     *
+     * @return The number of cards written and of cards left out because they were owned by then
+     */
+    private WrittenChunk writeChunk(List<Card> chunk) {
+        try {
+            // The index already counts queued removals as done, the database has to catch up before inserting
+            collectionWriter.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Import interrupted");
+        }
+        // A card may have been added by hand while its lookup was running
+        int requested = chunk.size();
+        chunk.removeIf(card -> collectionIndex.contains(card.getId()));
+        int alreadyOwned = requested - chunk.size();
+        if (chunk.isEmpty()) {
+            return new WrittenChunk(0, alreadyOwned);
+        }
+        long start = System.nanoTime();
+        cardRepository.insertAll(chunk);
+        for (Card card : chunk) {
+            collectionIndex.add(card.getId());
+        }
+        chunkListener.accept(chunk);
+        log.fine("Inserted " + chunk.size() + " cards in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return new WrittenChunk(chunk.size(), alreadyOwned);
+    }
+
+    private record WrittenChunk(int imported, int alreadyOwned) {
+    }
+
+    /**
+     * Reads the cards of a CSV export record by record, quoted fields may span lines.
+     */
+    private static final class CsvCards implements Iterator<Card> {
+        private final BufferedReader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private List<String> next;
+
+        private CsvCards(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> header = readRecord();
+            if (header != null) {
+                for (int i = 0; i < header.size(); i++) {
+                    columns.put(header.get(i).strip().replace("\uFEFF", ""), i);
+                }
+            }
+            next = readRecord();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Card next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            List<String> record = next;
+            try {
+                next = readRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Card card = new Card();
+            card.setId(value(record, "id"));
+            card.setName(value(record, "name"));
+            card.setSupertype(value(record, "supertype"));
+            card.setSubtypes(CollectionExporter.splitList(value(record, "subtypes")));
+            card.setTypes(CollectionExporter.splitList(value(record, "types")));
+            card.setNumber(value(record, "number"));
+            card.setRarity(value(record, "rarity"));
+            card.setSetInfo(new SetInfo(value(record, "set_id"), value(record, "set_name"), value(record, "series")));
+            card.setImageInfo(new ImageInfo(value(record, "image_small"), value(record, "image_large")));
+            String price = value(record, "average_sell_price");
+            card.setCardMarket(new CardMarket(new GermanPriceInfo(price != null ? new BigDecimal(price) : null)));
+            return card;
+        }
+
+        private String value(List<String> record, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= record.size() || record.get(index).isEmpty()) {
+                return null;
+            }
+            return record.get(index);
+        }
+
+        // The fields of the next record, or null at the end of the file
+        private List<String> readRecord() throws IOException {
+            String line = reader.readLine();
+            while (line != null && line.isEmpty()) {
+                line = reader.readLine();
+            }
+            if (line == null) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                for (int i = 0; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (quoted) {
+                        if (c == '"') {
+                            if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                                field.append('"');
+                                i++;
+                            } else {
+                                quoted = false;
+                            }
+                        } else {
+                            field.append(c);
+                        }
+                    } else if (c == '"') {
+                        quoted = true;
+                    } else if (c == ',') {
+                        fields.add(field.toString());
+                        field.setLength(0);
+                    } else {
+                        field.append(c);
+                    }
+                }
+                if (!quoted) {
+                    break;
+                }
+                // A line break inside a quoted field
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Unterminated quoted field in CSV file");
+                }
+                field.append('\n');
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    /**
+     * Counts the bytes read, for the progress of a file import.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
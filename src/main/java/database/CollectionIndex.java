@@ -0,0 +1,68 @@
+package database;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory set of the ids of the cards in the collection.
+ * Loaded once from the CardRepository and then kept in step with every save and delete,
+ * so checking whether a card is owned never touches the database. Safe to use from any thread.
+ */
+public class CollectionIndex {
+    private final Set<String> cardIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Builds the index from the ids currently in the database.
+     *
+     * @param cardRepository The repository to read the ids from
+     * @return The loaded index
+     */
+    public static CollectionIndex load(CardRepository cardRepository) {
+        CollectionIndex index = new CollectionIndex();
+        index.addAll(cardRepository.findAllIds());
+        return index;
+    }
+
+    /**
+     * @param cardId The id of a card
+     * @return true if the card is in the collection
+     */
+    public boolean contains(String cardId) {
+        return cardId != null && cardIds.contains(cardId);
+    }
+
+    /**
+     * Records a card as saved to the collection.
+     *
+     * @param cardId The id of the card
+     */
+    public void add(String cardId) {
+        cardIds.add(cardId);
+    }
+
+    /**
+     * Records cards as saved to the collection.
+     *
+     * @param ids The ids of the cards
+     */
+    public void addAll(Collection<String> ids) {
+        cardIds.addAll(ids);
+    }
+
+    /**
+     * Records a card as deleted from the collection.
+     *
+     * @param cardId The id of the card
+     */
+    public void remove(String cardId) {
+        cardIds.remove(cardId);
+    }
+
+    /**
+     * @return The number of cards in the collection
+     */
+    public int size() {
+        return cardIds.size();
+    }
+}
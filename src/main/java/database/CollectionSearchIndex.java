@@ -0,0 +1,259 @@
+package database;
+
+import data.Card;
+import data.CardSummary;
+import data.SetInfo;
+import org.springframework.data.domain.Pageable;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index for searching the cards in the collection.
+ * Indexes the id, name, set name, series, types, subtypes and rarity of every owned card. Each query
+ * word matches the indexed words it is a prefix of, and a card matches when all query words do, so
+ * "char ex" finds "Charizard ex". Case and accents are ignored. A search walks a sorted token map and
+ * intersects bit sets, it never touches the database.
+ * The index is kept in step with every collection change, and may already receive changes while it is
+ * still being loaded. Safe to use from any thread.
+ */
+public class CollectionSearchIndex {
+    // Every indexed word, with the documents that contain it
+    private final NavigableMap<String, BitSet> postings = new TreeMap<>();
+    // Document number by card id, and the card and words of each document number (null when free)
+    private final Map<String, Integer> documents = new HashMap<>();
+    private final List<Card> cards = new ArrayList<>();
+    private final List<Set<String>> documentTokens = new ArrayList<>();
+    // Lower case name and id of each document number, results are sorted by it
+    private final List<String> sortKeys = new ArrayList<>();
+    private final Deque<Integer> freeDocuments = new ArrayDeque<>();
+    // Cards removed while loading, the database may still hold them until their delete is written
+    private final Set<String> removedWhileLoading = new HashSet<>();
+    private boolean loaded;
+
+    /**
+     * Reads every card in the collection into the index.
+     * Only the summary columns, the series of each set and the subtypes and types are read, never the
+     * full entities. Changes made through add and remove in the meantime take precedence over what is read.
+     *
+     * @param cardRepository The repository to read the cards from
+     */
+    public void load(CardRepository cardRepository) {
+        Map<String, List<String>> subtypes = groupById(cardRepository.findAllSubtypes());
+        Map<String, List<String>> types = groupById(cardRepository.findAllTypes());
+        Map<String, String> seriesBySet = new HashMap<>();
+        for (Object[] row : cardRepository.findAllSetSeries()) {
+            seriesBySet.put((String) row[0], (String) row[1]);
+        }
+        List<Card> stored = new ArrayList<>();
+        for (CardSummary summary : cardRepository.findSummaries(Pageable.unpaged())) {
+            Card card = summary.toCard();
+            card.setSetInfo(new SetInfo(null, summary.setName(), seriesBySet.get(summary.setName())));
+            card.setSubtypes(subtypes.getOrDefault(card.getId(), List.of()));
+            card.setTypes(types.getOrDefault(card.getId(), List.of()));
+            stored.add(card);
+        }
+        synchronized (this) {
+            for (Card card : stored) {
+                if (!documents.containsKey(card.getId()) && !removedWhileLoading.contains(card.getId())) {
+                    index(card);
+                }
+            }
+            removedWhileLoading.clear();
+            loaded = true;
+        }
+    }
+
+    private static Map<String, List<String>> groupById(List<Object[]> rows) {
+        Map<String, List<String>> values = new HashMap<>();
+        for (Object[] row : rows) {
+            values.computeIfAbsent((String) row[0], id -> new ArrayList<>()).add((String) row[1]);
+        }
+        return values;
+    }
+
+    /**
+     * @return true once the stored cards have been read
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Adds a card to the index, or re-indexes it if it is there already.
+     *
+     * @param card The card, with its subtypes and types if it has any
+     */
+    public synchronized void add(Card card) {
+        removedWhileLoading.remove(card.getId());
+        unindex(card.getId());
+        index(card);
+    }
+
+    /**
+     * Adds cards to the index.
+     *
+     * @param added The cards
+     */
+    public synchronized void addAll(Collection<Card> added) {
+        for (Card card : added) {
+            add(card);
+        }
+    }
+
+    /**
+     * Removes a card from the index.
+     *
+     * @param cardId The id of the card
+     */
+    public synchronized void remove(String cardId) {
+        if (!loaded) {
+            removedWhileLoading.add(cardId);
+        }
+        unindex(cardId);
+    }
+
+    /**
+     * Finds the owned cards matching a query.
+     *
+     * @param query Words to look for, each one may be the start of a word
+     * @return The matching cards ordered by name, cards without subtypes and types read from the database
+     *         carry only the fields lists show
+     */
+    public List<Card> search(String query) {
+        Set<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        Integer[] order;
+        Card[] found;
+        String[] keys;
+        synchronized (this) {
+            BitSet result = null;
+            for (String word : words) {
+                BitSet wordMatches = new BitSet();
+                // All indexed words starting with the query word are adjacent in the sorted map
+                for (BitSet documentsWithToken : postings.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                    wordMatches.or(documentsWithToken);
+                }
+                if (result == null) {
+                    result = wordMatches;
+                } else {
+                    result.and(wordMatches);
+                }
+                if (result.isEmpty()) {
+                    return List.of();
+                }
+            }
+            order = new Integer[result.cardinality()];
+            found = new Card[order.length];
+            keys = new String[order.length];
+            int i = 0;
+            for (int document = result.nextSetBit(0); document >= 0; document = result.nextSetBit(document + 1), i++) {
+                order[i] = i;
+                found[i] = cards.get(document);
+                keys[i] = sortKeys.get(document);
+            }
+        }
+        // Sorted outside the lock, changes do not wait for large results
+        Arrays.sort(order, Comparator.comparing(match -> keys[match]));
+        List<Card> matches = new ArrayList<>(order.length);
+        for (Integer match : order) {
+            matches.add(found[match]);
+        }
+        return matches;
+    }
+
+    /**
+     * @return The number of indexed cards
+     */
+    public synchronized int size() {
+        return documents.size();
+    }
+
+    private void index(Card card) {
+        Set<String> tokens = new LinkedHashSet<>();
+        tokens.addAll(tokenize(card.getId()));
+        tokens.addAll(tokenize(card.getName()));
+        tokens.addAll(tokenize(card.getRarity()));
+        if (card.getSetInfo() != null) {
+            tokens.addAll(tokenize(card.getSetInfo().getSetName()));
+            tokens.addAll(tokenize(card.getSetInfo().getSeries()));
+        }
+        if (card.getSubtypes() != null) {
+            card.getSubtypes().forEach(subtype -> tokens.addAll(tokenize(subtype)));
+        }
+        if (card.getTypes() != null) {
+            card.getTypes().forEach(type -> tokens.addAll(tokenize(type)));
+        }
+
+        String sortKey = (card.getName() != null ? card.getName().toLowerCase(Locale.ROOT) : "") + '\0' + card.getId();
+        Integer document = freeDocuments.poll();
+        if (document == null) {
+            document = cards.size();
+            cards.add(card);
+            documentTokens.add(tokens);
+            sortKeys.add(sortKey);
+        } else {
+            cards.set(document, card);
+            documentTokens.set(document, tokens);
+            sortKeys.set(document, sortKey);
+        }
+        documents.put(card.getId(), document);
+        for (String token : tokens) {
+            postings.computeIfAbsent(token, t -> new BitSet()).set(document);
+        }
+    }
+
+    private void unindex(String cardId) {
+        Integer document = documents.remove(cardId);
+        if (document == null) {
+            return;
+        }
+        for (String token : documentTokens.get(document)) {
+            BitSet documentsWithToken = postings.get(token);
+            documentsWithToken.clear(document);
+            if (documentsWithToken.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+        cards.set(document, null);
+        documentTokens.set(document, null);
+        sortKeys.set(document, null);
+        freeDocuments.push(document);
+    }
+
+    /**
+     * Splits text into lower case words without accents, so "Pokémon-GX" gives "pokemon" and "gx".
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,12 @@
+package database;
+
+/**
+ * The database-backed services the GUI needs for the collection, handed over once the database has started.
+ *
+ * @param cardRepository Reads the collection
+ * @param collectionWriter Writes collection changes in the background
+ * @param priceHistoryStore Records and reads the price history of collected cards, may be null
+ */
+public record CollectionServices(CardRepository cardRepository, CollectionWriter collectionWriter,
+                                 PriceHistoryStore priceHistoryStore) {
+}
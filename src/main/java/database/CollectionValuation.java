@@ -0,0 +1,296 @@
+package database;
+
+import data.Card;
+import data.CardSummary;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Running value of the collection, in total, per set and per rarity, based on the average sell prices.
+ * Loaded once from the summary columns, then adjusted by every add, remove and price change, each of
+ * which only subtracts the card's old contribution and adds the new one. recompute rebuilds the totals
+ * from the database in case they ever drift. Amounts are kept in cents to add up exactly.
+ * Safe to use from any thread; change listeners are called on the thread that made the change.
+ */
+public class CollectionValuation {
+    private static final String UNKNOWN = "Unknown";
+
+    // The contribution of each owned card, by id
+    private final Map<String, Holding> holdings = new HashMap<>();
+    private final Accumulator overall = new Accumulator();
+    private final Map<String, Accumulator> bySet = new HashMap<>();
+    private final Map<String, Accumulator> byRarity = new HashMap<>();
+    // Changes made while a (re)computation reads the database, applied on top of what it read; null for a removal
+    private final Map<String, Holding> changedWhileLoading = new HashMap<>();
+    private int loadsInProgress;
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Value, card count and priced card count of a group of cards.
+     *
+     * @param valueCents The summed average sell price, in cents
+     * @param cards The number of cards
+     * @param pricedCards The number of cards with a price
+     */
+    public record Totals(long valueCents, int cards, int pricedCards) {
+        /**
+         * @return The value in euros
+         */
+        public BigDecimal value() {
+            return BigDecimal.valueOf(valueCents, 2);
+        }
+    }
+
+    private record Holding(String set, String rarity, long cents) {
+        static Holding of(String set, String rarity, BigDecimal price) {
+            return new Holding(set != null ? set : UNKNOWN, rarity != null ? rarity : UNKNOWN,
+                    cents(price));
+        }
+
+        static long cents(BigDecimal price) {
+            return price != null ? price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue() : -1;
+        }
+    }
+
+    private static class Accumulator {
+        long cents;
+        int cards;
+        int priced;
+
+        void add(Holding holding, int sign) {
+            cards += sign;
+            if (holding.cents() >= 0) {
+                cents += sign * holding.cents();
+                priced += sign;
+            }
+        }
+
+        Totals totals() {
+            return new Totals(cents, cards, priced);
+        }
+    }
+
+    /**
+     * Computes the totals from the cards in the database, replacing the current ones.
+     * Runs on the calling thread; changes made through put and remove in the meantime are kept.
+     *
+     * @param cardRepository The repository to read the card summaries from
+     */
+    public void recompute(CardRepository cardRepository) {
+        synchronized (this) {
+            loadsInProgress++;
+        }
+        Map<String, Holding> loaded = new HashMap<>();
+        try {
+            for (CardSummary summary : cardRepository.findSummaries(Pageable.unpaged())) {
+                loaded.put(summary.id(), Holding.of(summary.setName(), summary.rarity(), summary.averageSellPrice()));
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                loadFinished();
+            }
+            throw e;
+        }
+        synchronized (this) {
+            // Still counted as loading until here, so no change can slip in between reading and replacing
+            changedWhileLoading.forEach((id, holding) -> {
+                if (holding != null) {
+                    loaded.put(id, holding);
+                } else {
+                    loaded.remove(id);
+                }
+            });
+            loadFinished();
+            holdings.clear();
+            overall.cents = 0;
+            overall.cards = 0;
+            overall.priced = 0;
+            bySet.clear();
+            byRarity.clear();
+            loaded.forEach(this::apply);
+        }
+        fireChanged();
+    }
+
+    /**
+     * Adds a card, or takes over its new price if it is counted already.
+     *
+     * @param card The card
+     */
+    public void put(Card card) {
+        synchronized (this) {
+            putHolding(card);
+        }
+        fireChanged();
+    }
+
+    /**
+     * Adds cards, or takes over their new prices.
+     *
+     * @param cards The cards
+     */
+    public void putAll(Collection<Card> cards) {
+        synchronized (this) {
+            for (Card card : cards) {
+                putHolding(card);
+            }
+        }
+        fireChanged();
+    }
+
+    /**
+     * Removes a card.
+     *
+     * @param cardId The id of the card
+     */
+    public void remove(String cardId) {
+        synchronized (this) {
+            if (loadsInProgress > 0) {
+                changedWhileLoading.put(cardId, null);
+            }
+            unapply(cardId);
+        }
+        fireChanged();
+    }
+
+    /**
+     * Counts a card with another price, e.g. to restore the old one after a price change was not saved.
+     * Does nothing if the card is not counted.
+     *
+     * @param cardId The id of the card
+     * @param price The price, may be null
+     */
+    public void setPrice(String cardId, BigDecimal price) {
+        synchronized (this) {
+            Holding holding = holdings.get(cardId);
+            if (holding == null) {
+                return;
+            }
+            Holding repriced = new Holding(holding.set(), holding.rarity(), Holding.cents(price));
+            if (loadsInProgress > 0) {
+                changedWhileLoading.put(cardId, repriced);
+            }
+            unapply(cardId);
+            apply(cardId, repriced);
+        }
+        fireChanged();
+    }
+
+    /**
+     * @param cardId The id of a card
+     * @return The price the card is counted with, or null if it is not counted or has no price
+     */
+    public synchronized BigDecimal price(String cardId) {
+        Holding holding = holdings.get(cardId);
+        return holding != null && holding.cents() >= 0 ? BigDecimal.valueOf(holding.cents(), 2) : null;
+    }
+
+    /**
+     * @param cardId The id of a card
+     * @param price A price
+     * @return true if the card is counted with a different price, or counted without one while the price is known
+     */
+    public synchronized boolean isPriceChanged(String cardId, BigDecimal price) {
+        Holding holding = holdings.get(cardId);
+        return holding != null && holding.cents() != Holding.cents(price);
+    }
+
+    /**
+     * @return The totals of the whole collection
+     */
+    public synchronized Totals total() {
+        return overall.totals();
+    }
+
+    /**
+     * @return The totals of each set, by set name, most valuable first
+     */
+    public synchronized Map<String, Totals> bySet() {
+        return sorted(bySet);
+    }
+
+    /**
+     * @return The totals of each rarity, most valuable first
+     */
+    public synchronized Map<String, Totals> byRarity() {
+        return sorted(byRarity);
+    }
+
+    /**
+     * Registers a listener called after every change to the totals.
+     *
+     * @param listener The listener, called on the thread that made the change
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    private void loadFinished() {
+        loadsInProgress--;
+        if (loadsInProgress == 0) {
+            changedWhileLoading.clear();
+        }
+    }
+
+    private void putHolding(Card card) {
+        String setName = card.getSetInfo() != null ? card.getSetInfo().getSetName() : null;
+        BigDecimal price = card.getCardMarket() != null && card.getCardMarket().getPriceInfo() != null
+                ? card.getCardMarket().getPriceInfo().getAverageSellPrice() : null;
+        Holding holding = Holding.of(setName, card.getRarity(), price);
+        if (loadsInProgress > 0) {
+            changedWhileLoading.put(card.getId(), holding);
+        }
+        unapply(card.getId());
+        apply(card.getId(), holding);
+    }
+
+    private void apply(String cardId, Holding holding) {
+        holdings.put(cardId, holding);
+        overall.add(holding, 1);
+        bySet.computeIfAbsent(holding.set(), set -> new Accumulator()).add(holding, 1);
+        byRarity.computeIfAbsent(holding.rarity(), rarity -> new Accumulator()).add(holding, 1);
+    }
+
+    private void unapply(String cardId) {
+        Holding holding = holdings.remove(cardId);
+        if (holding == null) {
+            return;
+        }
+        overall.add(holding, -1);
+        subtract(bySet, holding.set(), holding);
+        subtract(byRarity, holding.rarity(), holding);
+    }
+
+    private static void subtract(Map<String, Accumulator> groups, String key, Holding holding) {
+        Accumulator group = groups.get(key);
+        group.add(holding, -1);
+        if (group.cards == 0) {
+            groups.remove(key);
+        }
+    }
+
+    private static Map<String, Totals> sorted(Map<String, Accumulator> groups) {
+        List<Map.Entry<String, Accumulator>> entries = new ArrayList<>(groups.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().cents, a.getValue().cents));
+        Map<String, Totals> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Accumulator> entry : entries) {
+            result.put(entry.getKey(), entry.getValue().totals());
+        }
+        return result;
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : changeListeners) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package database;
+
+import config.AppProperties;
+import data.Card;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+/**
+ * Write-behind queue for collection changes.
+ * Saves and deletes return immediately; a single writer thread waits a short moment to gather
+ * more changes, keeps only the latest change per card, and commits them together in one transaction.
+ * Pending changes are flushed when the Spring context closes.
+ */
+@Log
+@Component
+public class CollectionWriter implements DisposableBean {
+    private final CardRepository cardRepository;
+    // How long the writer waits for more changes before committing a batch
+    private final long batchDelayMillis;
+
+    // Latest change per card id, in the order cards were first changed (guarded by this)
+    private Map<String, Change> pending = new LinkedHashMap<>();
+    private boolean writing;
+    private boolean flushing;
+    private boolean stopped;
+    private volatile BiConsumer<List<Change>, Exception> failureListener = (changes, error) -> { };
+
+    /**
+     * What a change does to the collection.
+     */
+    public enum Kind {
+        // A card that was not in the collection
+        ADD,
+        // New data, such as a refreshed price, for a card already in the collection
+        UPDATE,
+        DELETE
+    }
+
+    /**
+     * A change to the collection, possibly several queued changes to the same card coalesced into one.
+     * wasStored and previousPrice describe the database before the first of them, which is what the
+     * collection goes back to should the write fail.
+     *
+     * @param card The card
+     * @param kind What the latest change does
+     * @param previousPrice If wasStored, the average sell price the card is stored with; null otherwise
+     * @param wasStored true if the database held the card before the change
+     */
+    public record Change(Card card, Kind kind, BigDecimal previousPrice, boolean wasStored) {
+        /**
+         * @return true if the card is written, false if it is deleted
+         */
+        public boolean save() {
+            return kind != Kind.DELETE;
+        }
+    }
+
+    /**
+     * Creates the writer and starts its thread.
+     *
+     * @param cardRepository The repository the changes are written to
+     */
+    public CollectionWriter(CardRepository cardRepository) {
+        this.cardRepository = cardRepository;
+        this.batchDelayMillis = AppProperties.getLong("collection.writeBehind.batchDelayMillis", 200);
+        Thread writer = new Thread(this::run, "collection-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Sets the listener told about changes that could not be written.
+     * It is called on the writer thread, only with changes that were not superseded by a newer change
+     * to the same card in the meantime.
+     *
+     * @param listener Receives the failed changes and the error
+     */
+    public void setFailureListener(BiConsumer<List<Change>, Exception> listener) {
+        this.failureListener = listener;
+    }
+
+    /**
+     * Queues a card to be added to the collection.
+     *
+     * @param card The card
+     */
+    public void add(Card card) {
+        enqueue(new Change(card, Kind.ADD, null, false));
+    }
+
+    /**
+     * Queues new data for a card that is already in the collection.
+     *
+     * @param card The card
+     * @param previousPrice The average sell price the card is stored with, restored should the write fail
+     */
+    public void update(Card card, BigDecimal previousPrice) {
+        enqueue(new Change(card, Kind.UPDATE, previousPrice, true));
+    }
+
+    /**
+     * Queues a card to be deleted from the collection.
+     *
+     * @param card The card, as it is stored
+     */
+    public void delete(Card card) {
+        BigDecimal price = card.getCardMarket() != null && card.getCardMarket().getPriceInfo() != null
+                ? card.getCardMarket().getPriceInfo().getAverageSellPrice() : null;
+        enqueue(new Change(card, Kind.DELETE, price, true));
+    }
+
+    private synchronized void enqueue(Change change) {
+        if (stopped) {
+            throw new IllegalStateException("The collection writer has been shut down");
+        }
+        // A newer change to the same card replaces the queued one, but the database still holds
+        // what it held before the queued one, e.g. a card deleted and added again is still stored
+        Change queued = pending.get(change.card().getId());
+        if (queued != null) {
+            change = new Change(change.card(), change.kind(), queued.previousPrice(), queued.wasStored());
+        }
+        pending.put(change.card().getId(), change);
+        notifyAll();
+    }
+
+    /**
+     * Blocks until every queued change has been written.
+     */
+    public synchronized void flush() throws InterruptedException {
+        flushing = true;
+        notifyAll();
+        try {
+            while (!pending.isEmpty() || writing) {
+                wait();
+            }
+        } finally {
+            flushing = false;
+        }
+    }
+
+    /**
+     * Writes the pending changes and stops the writer, called when the Spring context closes.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        flush();
+        synchronized (this) {
+            stopped = true;
+            notifyAll();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Map<String, Change> batch;
+            try {
+                batch = nextBatch();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (batch == null) {
+                return;
+            }
+            try {
+                write(batch);
+            } catch (Exception e) {
+                log.log(Level.SEVERE, "Failed to write " + batch.size() + " collection changes", e);
+                failureListener.accept(unsuperseded(batch), e);
+            } finally {
+                synchronized (this) {
+                    writing = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for changes, then for the batch delay to gather more of them, and takes them all.
+     *
+     * @return The batch to write, or null once the writer is stopped
+     */
+    private synchronized Map<String, Change> nextBatch() throws InterruptedException {
+        while (pending.isEmpty()) {
+            if (stopped) {
+                return null;
+            }
+            wait();
+        }
+        long deadline = System.currentTimeMillis() + batchDelayMillis;
+        long remaining;
+        while (!flushing && (remaining = deadline - System.currentTimeMillis()) > 0) {
+            wait(remaining);
+        }
+        Map<String, Change> batch = pending;
+        pending = new LinkedHashMap<>();
+        writing = true;
+        return batch;
+    }
+
+    private void write(Map<String, Change> batch) {
+        List<Card> saves = new ArrayList<>();
+        List<String> deleteIds = new ArrayList<>();
+        for (Change change : batch.values()) {
+            if (change.save()) {
+                saves.add(change.card());
+            } else {
+                deleteIds.add(change.card().getId());
+            }
+        }
+        long start = System.nanoTime();
+        cardRepository.saveAndDeleteAll(saves, deleteIds);
+        log.info("Wrote " + saves.size() + " saves and " + deleteIds.size() + " deletes in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private synchronized List<Change> unsuperseded(Map<String, Change> batch) {
+        List<Change> failed = new ArrayList<>();
+        for (Change change : batch.values()) {
+            if (!pending.containsKey(change.card().getId())) {
+                failed.add(change);
+            }
+        }
+        return failed;
+    }
+}
@@ -0,0 +1,382 @@
+package database;
+
+import config.AppProperties;
+import data.Card;
+import data.PricePoint;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Append-only price history of collected cards.
+ * Points are stored per card in segments of up to priceHistory.segmentPoints points: the time of the
+ * first point, then for every point the seconds since the previous one and the change in cents, both as
+ * variable-length integers, so a typical point takes two to four bytes. New points are appended to the
+ * newest segment, and a full segment is never written again. Snapshots older than
+ * priceHistory.rawRetentionDays are rolled up into one mean point per day, and daily points older than
+ * priceHistory.dailyRetentionDays into one per week, which keeps years of history small.
+ * Recording and rolling up happen on one background thread; reads run on the calling thread.
+ */
+@Log
+@Component
+public class PriceHistoryStore implements DisposableBean {
+    // Tiers of the price_history_segment table
+    private static final int RAW = 0;
+    private static final int DAILY = 1;
+    private static final int WEEKLY = 2;
+    private static final long DAY = 86_400;
+    private static final long WEEK = 7 * DAY;
+    // 1970-01-05 was a Monday, weekly points start on Mondays
+    private static final long WEEK_ORIGIN = 4 * DAY;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final TransactionTemplate readTransactions;
+    private final int segmentPoints;
+    private final long rawRetentionSeconds;
+    private final long dailyRetentionSeconds;
+    // Records and rolls up, one task at a time
+    private final ScheduledExecutorService writer;
+
+    private record Tail(long firstTime, long lastTime, long lastCents, int pointCount, byte[] data) {
+    }
+
+    /**
+     * Creates the store and schedules the rollups.
+     *
+     * @param dataSource The collection database
+     * @param transactionManager The transaction manager of the collection database
+     */
+    public PriceHistoryStore(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.readTransactions = new TransactionTemplate(transactionManager);
+        readTransactions.setReadOnly(true);
+        // At most 20 bytes per point, so a segment always fits the 4096 byte column
+        this.segmentPoints = Math.max(2, Math.min(200, AppProperties.getInt("priceHistory.segmentPoints", 128)));
+        this.rawRetentionSeconds = AppProperties.getLong("priceHistory.rawRetentionDays", 30) * DAY;
+        this.dailyRetentionSeconds = AppProperties.getLong("priceHistory.dailyRetentionDays", 365) * DAY;
+        this.writer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "price-history");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long rollupHours = AppProperties.getLong("priceHistory.rollupIntervalHours", 24);
+        writer.scheduleWithFixedDelay(this::rollUpSafely, 1, TimeUnit.HOURS.toMinutes(rollupHours), TimeUnit.MINUTES);
+    }
+
+    /**
+     * Records the current prices of cards in the background.
+     * A price equal to the card's last recorded one is skipped unless a day has passed since.
+     *
+     * @param cards The cards, those without a price are ignored
+     */
+    public void record(Collection<Card> cards) {
+        long now = Instant.now().getEpochSecond();
+        Map<String, Long> prices = new LinkedHashMap<>();
+        for (Card card : cards) {
+            BigDecimal price = card.getCardMarket() != null && card.getCardMarket().getPriceInfo() != null
+                    ? card.getCardMarket().getPriceInfo().getAverageSellPrice() : null;
+            if (price != null) {
+                prices.put(card.getId(), price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue());
+            }
+        }
+        if (prices.isEmpty()) {
+            return;
+        }
+        try {
+            writer.execute(() -> {
+                try {
+                    recordAt(now, prices);
+                } catch (Exception e) {
+                    log.log(Level.SEVERE, "Failed to record " + prices.size() + " prices", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.fine("Price history is shut down, " + prices.size() + " prices not recorded");
+        }
+    }
+
+    /**
+     * Reads the price history of a card, at most maxPoints points of it.
+     * Longer histories are downsampled to the mean of equal time buckets.
+     *
+     * @param cardId The card id
+     * @param from The start of the range, in epoch seconds
+     * @param to The end of the range, in epoch seconds
+     * @param maxPoints The most points to return
+     * @return The points in the range, oldest first
+     */
+    public List<PricePoint> history(String cardId, long from, long to, int maxPoints) {
+        List<PricePoint> points = new ArrayList<>();
+        readTransactions.executeWithoutResult(status -> jdbc.query(
+                "select first_time, data from price_history_segment "
+                        + "where card_id = ? and first_time <= ? and last_time >= ?",
+                row -> {
+                    for (PricePoint point : decode(row.getLong(1), row.getBytes(2))) {
+                        if (point.time() >= from && point.time() <= to) {
+                            points.add(point);
+                        }
+                    }
+                }, cardId, to, from));
+        // Tiers cover consecutive time ranges, weekly points are the oldest
+        points.sort(Comparator.comparingLong(PricePoint::time));
+        return downsample(points, maxPoints);
+    }
+
+    /**
+     * Averages points into at most maxPoints buckets of equal duration.
+     *
+     * @param points Points ordered by time
+     * @param maxPoints The most points to return
+     * @return The points, or their bucket means if there are more than maxPoints
+     */
+    public static List<PricePoint> downsample(List<PricePoint> points, int maxPoints) {
+        if (points.size() <= maxPoints || maxPoints < 1) {
+            return points;
+        }
+        long first = points.get(0).time();
+        long span = points.get(points.size() - 1).time() - first + 1;
+        List<PricePoint> sampled = new ArrayList<>(maxPoints);
+        int bucket = -1;
+        long timeSum = 0;
+        long centsSum = 0;
+        int count = 0;
+        for (PricePoint point : points) {
+            int pointBucket = (int) ((point.time() - first) * maxPoints / span);
+            if (pointBucket != bucket && count > 0) {
+                sampled.add(new PricePoint(timeSum / count, Math.round((double) centsSum / count)));
+                timeSum = 0;
+                centsSum = 0;
+                count = 0;
+            }
+            bucket = pointBucket;
+            timeSum += point.time();
+            centsSum += point.cents();
+            count++;
+        }
+        sampled.add(new PricePoint(timeSum / count, Math.round((double) centsSum / count)));
+        return sampled;
+    }
+
+    /**
+     * Finishes pending recordings and stops the background thread, called when the Spring context closes.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        writer.shutdown();
+        if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warning("Price history did not finish writing in time");
+        }
+    }
+
+    /**
+     * Records prices taken at a given time, on the calling thread.
+     *
+     * @param time The time of the snapshot, in epoch seconds
+     * @param centsByCard The prices in cents, by card id
+     */
+    void recordAt(long time, Map<String, Long> centsByCard) {
+        transactions.executeWithoutResult(status ->
+                centsByCard.forEach((cardId, cents) -> append(cardId, RAW, time, cents, true)));
+    }
+
+    /**
+     * Appends a point to the newest segment of a card's tier, or starts a new segment when it is full.
+     */
+    private void append(String cardId, int tier, long time, long cents, boolean skipUnchanged) {
+        Tail tail = jdbc.query("select first_time, last_time, last_cents, point_count, data from price_history_segment "
+                        + "where card_id = ? and tier = ? order by first_time desc limit 1",
+                row -> row.next() ? new Tail(row.getLong(1), row.getLong(2), row.getLong(3), row.getInt(4),
+                        row.getBytes(5)) : null, cardId, tier);
+        if (tail != null) {
+            if (skipUnchanged && cents == tail.lastCents() && time - tail.lastTime() < DAY) {
+                return;
+            }
+            // Times never go backwards, whatever the clock does
+            time = Math.max(time, tail.lastTime());
+            if (tail.pointCount() < segmentPoints) {
+                ByteArrayOutputStream data = new ByteArrayOutputStream(tail.data().length + 4);
+                data.writeBytes(tail.data());
+                writeDelta(data, time - tail.lastTime(), cents - tail.lastCents());
+                jdbc.update("update price_history_segment set last_time = ?, last_cents = ?, point_count = ?, data = ? "
+                                + "where card_id = ? and tier = ? and first_time = ?",
+                        time, cents, tail.pointCount() + 1, data.toByteArray(), cardId, tier, tail.firstTime());
+                return;
+            }
+            // Segments never share a time, so each one starts after the previous one ends
+            time = Math.max(time, tail.lastTime() + 1);
+        }
+        insertSegment(cardId, tier, List.of(new PricePoint(time, cents)));
+    }
+
+    private void insertSegment(String cardId, int tier, List<PricePoint> points) {
+        PricePoint last = points.get(points.size() - 1);
+        jdbc.update("insert into price_history_segment (card_id, tier, first_time, last_time, last_cents, point_count, data) "
+                        + "values (?, ?, ?, ?, ?, ?, ?)",
+                cardId, tier, points.get(0).time(), last.time(), last.cents(), points.size(), encode(points));
+    }
+
+    private void rollUpSafely() {
+        try {
+            rollUpAt(Instant.now().getEpochSecond());
+        } catch (Exception e) {
+            log.log(Level.SEVERE, "Price history rollup failed", e);
+        }
+    }
+
+    /**
+     * Rolls up the points that are older than the retention periods at a given time, on the calling thread.
+     *
+     * @param now The current time, in epoch seconds
+     */
+    void rollUpAt(long now) {
+        long start = System.nanoTime();
+        int raw = rollUp(RAW, DAILY, bucketStart(now - rawRetentionSeconds, DAY, 0), DAY, 0);
+        int daily = rollUp(DAILY, WEEKLY, bucketStart(now - dailyRetentionSeconds, WEEK, WEEK_ORIGIN),
+                WEEK, WEEK_ORIGIN);
+        if (raw + daily > 0) {
+            log.info("Rolled up the price history of " + raw + " cards into days and " + daily
+                    + " into weeks in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    /**
+     * Replaces the points of a tier before a cutoff with their bucket means in the next tier.
+     * The cutoff is a bucket boundary and every point before it is rolled up at once, so a bucket is
+     * never split between two rollups.
+     *
+     * @return The number of cards rolled up
+     */
+    private int rollUp(int fromTier, int toTier, long cutoff, long bucketSize, long origin) {
+        List<String> cardIds = jdbc.queryForList("select distinct card_id from price_history_segment "
+                + "where tier = ? and first_time < ?", String.class, fromTier, cutoff);
+        for (String cardId : cardIds) {
+            transactions.executeWithoutResult(status -> {
+                List<PricePoint> older = new ArrayList<>();
+                List<PricePoint> newer = new ArrayList<>();
+                jdbc.query("select first_time, data from price_history_segment "
+                                + "where card_id = ? and tier = ? and first_time < ? order by first_time",
+                        row -> {
+                            for (PricePoint point : decode(row.getLong(1), row.getBytes(2))) {
+                                (point.time() < cutoff ? older : newer).add(point);
+                            }
+                        }, cardId, fromTier, cutoff);
+                jdbc.update("delete from price_history_segment where card_id = ? and tier = ? and first_time < ?",
+                        cardId, fromTier, cutoff);
+                // The points after the cutoff of the segment spanning it stay in this tier
+                if (!newer.isEmpty()) {
+                    insertSegment(cardId, fromTier, newer);
+                }
+                long bucket = Long.MIN_VALUE;
+                long centsSum = 0;
+                int count = 0;
+                for (PricePoint point : older) {
+                    long pointBucket = bucketStart(point.time(), bucketSize, origin);
+                    if (pointBucket != bucket && count > 0) {
+                        append(cardId, toTier, bucket, Math.round((double) centsSum / count), false);
+                        centsSum = 0;
+                        count = 0;
+                    }
+                    bucket = pointBucket;
+                    centsSum += point.cents();
+                    count++;
+                }
+                if (count > 0) {
+                    append(cardId, toTier, bucket, Math.round((double) centsSum / count), false);
+                }
+            });
+        }
+        return cardIds.size();
+    }
+
+    private static long bucketStart(long time, long bucketSize, long origin) {
+        return Math.floorDiv(time - origin, bucketSize) * bucketSize + origin;
+    }
+
+    /**
+     * Encodes the points of a new segment; the segment's first_time is the time of the first point.
+     *
+     * @param points The points, oldest first
+     * @return The segment data
+     */
+    static byte[] encode(List<PricePoint> points) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(points.size() * 4);
+        long previousTime = points.get(0).time();
+        long previousCents = 0;
+        for (PricePoint point : points) {
+            writeDelta(data, point.time() - previousTime, point.cents() - previousCents);
+            previousTime = point.time();
+            previousCents = point.cents();
+        }
+        return data.toByteArray();
+    }
+
+    /**
+     * Decodes the points of a segment.
+     *
+     * @param firstTime The first_time of the segment
+     * @param data The segment data
+     * @return The points, oldest first
+     */
+    static List<PricePoint> decode(long firstTime, byte[] data) {
+        List<PricePoint> points = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long time = firstTime;
+        long cents = 0;
+        while (buffer.hasRemaining()) {
+            time += readVarLong(buffer);
+            long zigZag = readVarLong(buffer);
+            cents += (zigZag >>> 1) ^ -(zigZag & 1);
+            points.add(new PricePoint(time, cents));
+        }
+        return points;
+    }
+
+    private static void writeDelta(ByteArrayOutputStream out, long timeDelta, long centsDelta) {
+        writeVarLong(out, timeDelta);
+        // Zig-zag, so small decreases stay as short as small increases
+        writeVarLong(out, (centsDelta << 1) ^ (centsDelta >> 63));
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,138 @@
+package database;
+
+import lombok.extern.java.Log;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versioned schema migrations for the collection database, run once at startup before Hibernate.
+ * Each migration is a SQL script in db/migration, applied in its own transaction and recorded in the
+ * schema_version table. When the recorded version is already the latest, startup costs a single
+ * query; the schema is never inspected. New migrations are added to MIGRATIONS, never edited.
+ */
+@Log
+public class SchemaMigrations {
+    // In order, version i + 1 is MIGRATIONS[i]
+    private static final String[] MIGRATIONS = {
+            "V1__collection_tables.sql",
+            "V2__collection_indexes.sql",
+            "V3__price_history.sql",
+    };
+    private static final String LOCATION = "/db/migration/";
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * @return The schema version this build expects
+     */
+    public static int latestVersion() {
+        return MIGRATIONS.length;
+    }
+
+    /**
+     * Brings the database schema up to the latest version.
+     *
+     * @param dataSource The collection database
+     * @throws IllegalStateException If a migration fails or the database is newer than this build
+     */
+    public static void migrate(DataSource dataSource) {
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            int version = currentVersion(connection);
+            if (version == latestVersion()) {
+                log.fine("Schema is at version " + version);
+                return;
+            }
+            if (version > latestVersion()) {
+                throw new IllegalStateException("Database schema version " + version
+                        + " is newer than this application supports (" + latestVersion() + ")");
+            }
+            for (int next = version + 1; next <= latestVersion(); next++) {
+                apply(connection, next, MIGRATIONS[next - 1]);
+            }
+            log.info("Migrated schema from version " + version + " to " + latestVersion() + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Schema migration failed", e);
+        }
+    }
+
+    /**
+     * Reads the recorded version, creating the schema_version table on a database that has none.
+     */
+    private static int currentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("select max(version) from schema_version")) {
+            connection.commit();
+            return result.next() ? result.getInt(1) : 0;
+        } catch (SQLException missingTable) {
+            // A new database, or one created by Hibernate before migrations were introduced
+            connection.rollback();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("create table if not exists schema_version ("
+                        + "version int not null primary key, "
+                        + "script varchar(255) not null, "
+                        + "installed_on timestamp default current_timestamp not null)");
+            }
+            connection.commit();
+            return 0;
+        }
+    }
+
+    private static void apply(Connection connection, int version, String script) throws SQLException, IOException {
+        log.info("Applying schema migration " + script);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements(script)) {
+                statement.execute(sql);
+            }
+            try (PreparedStatement record = connection.prepareStatement(
+                    "insert into schema_version (version, script) values (?, ?)")) {
+                record.setInt(1, version);
+                record.setString(2, script);
+                record.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Splits a migration script into statements, dropping "--" comment lines.
+     */
+    private static List<String> statements(String script) throws IOException {
+        String text;
+        try (InputStream in = SchemaMigrations.class.getResourceAsStream(LOCATION + script)) {
+            if (in == null) {
+                throw new IOException("Migration script not found: " + LOCATION + script);
+            }
+            text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        StringBuilder withoutComments = new StringBuilder();
+        for (String line : text.split("\n")) {
+            if (!line.strip().startsWith("--")) {
+                withoutComments.append(line).append('\n');
+            }
+        }
+        List<String> statements = new ArrayList<>();
+        for (String sql : withoutComments.toString().split(";")) {
+            if (!sql.isBlank()) {
+                statements.add(sql.strip());
+            }
+        }
+        return statements;
+    }
+}
@@ -2,21 +2,59 @@ package gui;
 
 import api.APIGet;
 import data.Card;
+import data.CardSummary;
+import data.PricePoint;
 import database.CardRepository;
+import database.CollectionExporter;
+import database.CollectionImporter;
+import database.CollectionIndex;
+import database.CollectionSearchIndex;
+import database.CollectionServices;
+import database.CollectionValuation;
+import database.PriceHistoryStore;
+import database.CollectionWriter;
 import lombok.Setter;
 import lombok.extern.java.Log;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import util.CardResultEngine;
+import util.ImageCache;
+import util.KeysetPageLoader;
+import util.LazyListModel;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.util.ArrayList; // Import ArrayList
 import java.util.Collections; // Import Collections
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 @Log
 public class CardController {
-    private final CardRepository cardRepository;
+    // Null until the database has started, and for good if it failed to (only touched on the EDT)
+    private CardRepository cardRepository;
+    // Writes collection changes in the background, available together with the repository
+    private CollectionWriter collectionWriter;
+    // Ids of the owned cards, available together with the repository
+    private CollectionIndex collectionIndex;
+    // Words of the owned cards for the collection search box, filled in the background once the repository is ready
+    private CollectionSearchIndex collectionSearchIndex;
+    private CompletableFuture<Void> searchIndexLoad;
+    // Running value of the owned cards, computed in the background once the repository is ready
+    private CollectionValuation collectionValuation;
+    // Price history of collected cards, null without the Spring context
+    private PriceHistoryStore priceHistoryStore;
+    private boolean repositorySettled;
+    private final List<Consumer<Boolean>> repositoryListeners = new ArrayList<>();
 
     // Setters for main layout components and the detail panel
     @Setter private JPanel cardContainer;
@@ -24,9 +62,164 @@ public class CardController {
     @Setter private SearchByIdPanel searchByIdPanel; // Needed to navigate TO the detail view
 
     private Card currentlyDisplayedCard; // Card shown in the SearchByIdPanel's detail view
+    private CardDetailView cardDetailView; // Reused for every card shown, created on first use
+    private int collectionLoadGeneration; // Incremented whenever a collection load starts or the view is left
 
+    // Number of collection cards read from the database at a time
+    private static final int COLLECTION_PAGE_SIZE = 50;
+    // Result rows are handed to the list in chunks, in EDT slices of at most this many milliseconds
+    private static final int RESULT_CHUNK_SIZE = 25;
+    private static final long RESULT_SLICE_BUDGET_MS = 8;
+
+    /**
+     * Creates a controller over a repository that is already available, without a price history.
+     * @param cardRepository The repository, or null to disable the collection features.
+     */
     public CardController(CardRepository cardRepository) {
-        this.cardRepository = cardRepository;
+        this(CompletableFuture.completedFuture(cardRepository != null
+                ? new CollectionServices(cardRepository, unmanagedWriter(cardRepository), null) : null));
+    }
+
+    // Outside Spring nothing destroys the writer, so a shutdown hook writes its pending changes instead
+    private static CollectionWriter unmanagedWriter(CardRepository cardRepository) {
+        CollectionWriter writer = new CollectionWriter(cardRepository);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                writer.destroy();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "collection-writer-shutdown"));
+        return writer;
+    }
+
+    /**
+     * Creates a controller while the database may still be starting.
+     * Searches work straight away, collection features become available once the repository arrives.
+     * @param collectionServices Completes with the collection services, or exceptionally if the database failed to start.
+     */
+    public CardController(CompletableFuture<CollectionServices> collectionServices) {
+        // The membership index is loaded in the background before the collection counts as ready
+        collectionServices.whenCompleteAsync((services, error) -> {
+            if (error != null) {
+                log.log(Level.SEVERE, "Collection database failed to start", error);
+            }
+            CollectionIndex index = null;
+            if (services != null) {
+                try {
+                    index = CollectionIndex.load(services.cardRepository());
+                    log.info("Collection index loaded with " + index.size() + " cards.");
+                } catch (Exception e) {
+                    log.log(Level.SEVERE, "Failed to load the collection index", e);
+                }
+            }
+            CollectionIndex loadedIndex = index;
+            SwingUtilities.invokeLater(() -> repositoryReady(loadedIndex != null ? services : null, loadedIndex));
+        });
+    }
+
+    private void repositoryReady(CollectionServices services, CollectionIndex index) {
+        if (services != null) {
+            this.cardRepository = services.cardRepository();
+            this.collectionWriter = services.collectionWriter();
+            this.priceHistoryStore = services.priceHistoryStore();
+            this.collectionIndex = index;
+            this.collectionSearchIndex = new CollectionSearchIndex();
+            CardRepository repository = services.cardRepository();
+            this.searchIndexLoad = CompletableFuture.runAsync(() -> {
+                long start = System.nanoTime();
+                collectionSearchIndex.load(repository);
+                log.info("Collection search index loaded with " + collectionSearchIndex.size() + " cards in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            }).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    log.log(Level.SEVERE, "Failed to load the collection search index", error);
+                }
+            });
+            this.collectionValuation = new CollectionValuation();
+            recomputeCollectionValue();
+            collectionWriter.setFailureListener((changes, error) ->
+                    SwingUtilities.invokeLater(() -> collectionWriteFailed(changes, error)));
+        }
+        this.repositorySettled = true;
+        log.info(services != null ? "Collection database ready." : "Collection features are unavailable.");
+        for (Consumer<Boolean> listener : repositoryListeners) {
+            listener.accept(services != null);
+        }
+        repositoryListeners.clear();
+    }
+
+    /**
+     * Runs an action on the EDT once the database has started or failed to.
+     * Runs it right away if that has already happened.
+     * @param listener Called with true if collection features are available.
+     */
+    public void whenCollectionReady(Consumer<Boolean> listener) {
+        if (repositorySettled) {
+            listener.accept(cardRepository != null);
+        } else {
+            repositoryListeners.add(listener);
+        }
+    }
+
+    /**
+     * @return true once the collection database is available.
+     */
+    public boolean isCollectionAvailable() {
+        return cardRepository != null;
+    }
+
+    /**
+     * @return The running value of the collection, or null until the collection database is ready.
+     */
+    public CollectionValuation getCollectionValuation() {
+        return collectionValuation;
+    }
+
+    /**
+     * Recomputes the collection value from the database in the background.
+     * The value is otherwise kept up to date incrementally, this only corrects it should it ever drift.
+     */
+    public void recomputeCollectionValue() {
+        if (collectionValuation == null) {
+            return;
+        }
+        CollectionValuation valuation = collectionValuation;
+        CardRepository repository = cardRepository;
+        CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            valuation.recompute(repository);
+            log.info("Collection value computed for " + valuation.total().cards() + " cards in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                log.log(Level.SEVERE, "Failed to compute the collection value", error);
+            }
+        });
+    }
+
+    /**
+     * Reads the price history of a card in the background.
+     * @param cardId The card id.
+     * @param maxPoints The most points to return, longer histories are downsampled.
+     * @return The points, oldest first; empty if there is no history or no price history store.
+     */
+    public CompletableFuture<List<PricePoint>> loadPriceHistory(String cardId, int maxPoints) {
+        if (priceHistoryStore == null) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        PriceHistoryStore store = priceHistoryStore;
+        return CompletableFuture.supplyAsync(() -> store.history(cardId, 0, Long.MAX_VALUE, maxPoints));
+    }
+
+    /**
+     * Records the prices of owned cards in the price history, in the background.
+     * @param cards Owned cards with their current prices.
+     */
+    private void recordPrices(List<Card> cards) {
+        if (priceHistoryStore != null && !cards.isEmpty()) {
+            priceHistoryStore.record(cards);
+        }
     }
 
     /**
@@ -252,10 +445,32 @@ public class CardController {
     }
 
     /**
-     * Loads all saved cards from the database and displays them in the collection panel.
+     * Loads the saved cards from the database into the collection panel.
+     * Only the number of cards is read up front; the list then loads pages of cards
+     * around the visible rows as the user scrolls.
      * @param collectionPanel The JPanel within ViewCollectionPanel to update.
      */
     public void loadCollectionView(JPanel collectionPanel) {
+        loadCollectionView(collectionPanel, false);
+    }
+
+    /**
+     * Loads the saved cards from the database into the collection panel, as a list or a thumbnail gallery.
+     * @param collectionPanel The JPanel within ViewCollectionPanel to update.
+     * @param galleryMode true to show the cards as a grid of thumbnails instead of a list.
+     */
+    public void loadCollectionView(JPanel collectionPanel, boolean galleryMode) {
+        if (!repositorySettled) {
+            // Still starting up, load as soon as the database is ready
+            UIUtils.setLoadingState(collectionPanel, "Opening your collection...");
+            int generation = ++collectionLoadGeneration;
+            whenCollectionReady(available -> {
+                if (generation == collectionLoadGeneration) {
+                    loadCollectionView(collectionPanel, galleryMode);
+                }
+            });
+            return;
+        }
         if (cardRepository == null) {
             log.severe("CardRepository is null. Cannot load collection.");
             UIUtils.setErrorState(collectionPanel, "Database connection error.");
@@ -263,15 +478,15 @@ public class CardController {
         }
 
         UIUtils.setLoadingState(collectionPanel, "Loading your collection...");
+        int generation = ++collectionLoadGeneration;
 
-        SwingWorker<List<Card>, Void> worker = new SwingWorker<>() {
+        SwingWorker<Long, Void> worker = new SwingWorker<>() {
             @Override
-            protected List<Card> doInBackground() throws Exception {
+            protected Long doInBackground() throws Exception {
                 try {
-                    // Fetch all cards from the repository
-                    return cardRepository.findAll();
+                    return cardRepository.count();
                 } catch (Exception dbEx) {
-                    log.log(Level.SEVERE, "Database query failed for findAll", dbEx);
+                    log.log(Level.SEVERE, "Database query failed for count", dbEx);
                     throw new RuntimeException("Failed to load collection from database: " + dbEx.getMessage(), dbEx);
                 }
             }
@@ -279,9 +494,23 @@ public class CardController {
             @Override
             protected void done() {
                 try {
-                    List<Card> cards = get();
-                    // Use the same display method, provide specific empty message
-                    displayCardSearchResults(cards, collectionPanel, "Your collection is empty. Add cards using the search features!");
+                    if (generation != collectionLoadGeneration) {
+                        return; // The user navigated away while the collection was being counted
+                    }
+                    int size = Math.toIntExact(get());
+                    // Only the summary columns are read, the full card is loaded when one is opened.
+                    // Pages are read in id order with keyset pagination, so offsets stay stable while scrolling
+                    // and deep pages cost the same as the first
+                    KeysetPageLoader pageLoader = new KeysetPageLoader(COLLECTION_PAGE_SIZE,
+                            (afterId, limit) -> (afterId == null
+                                    ? cardRepository.findSummaries(PageRequest.of(0, limit, Sort.by("id")))
+                                    : cardRepository.findSummariesAfter(afterId, Limit.of(limit)))
+                                    .stream().map(CardSummary::toCard).toList(),
+                            (offset, limit) -> cardRepository.findSummaries(PageRequest.of(offset / COLLECTION_PAGE_SIZE,
+                                    COLLECTION_PAGE_SIZE, Sort.by("id"))).stream().map(CardSummary::toCard).toList());
+                    LazyListModel model = new LazyListModel(size, COLLECTION_PAGE_SIZE, 4, pageLoader);
+                    displayCardList(model, collectionPanel, "Your collection is empty. Add cards using the search features!",
+                            galleryMode, null, CardController.this::showCollectionCard);
                 } catch (Exception ex) {
                     log.log(Level.SEVERE, "Error retrieving collection from database", ex);
                     UIUtils.setErrorState(collectionPanel, "Error loading collection: " + ex.getMessage());
@@ -291,56 +520,108 @@ public class CardController {
         worker.execute();
     }
 
+    /**
+     * Shows the owned cards matching a query in the collection panel, or the whole collection for an empty query.
+     * The query is answered from the in-memory CollectionSearchIndex; while that is still loading,
+     * the search runs as soon as it is ready.
+     * @param query The words to search for, each one may be the start of a word.
+     * @param collectionPanel The JPanel within ViewCollectionPanel to update.
+     * @param galleryMode true to show the matches as a grid of thumbnails instead of a list.
+     */
+    public void searchCollection(String query, JPanel collectionPanel, boolean galleryMode) {
+        if (query == null || query.isBlank() || !repositorySettled || cardRepository == null) {
+            loadCollectionView(collectionPanel, galleryMode);
+            return;
+        }
+        int generation = ++collectionLoadGeneration;
+        if (!searchIndexLoad.isDone()) {
+            UIUtils.setLoadingState(collectionPanel, "Indexing your collection...");
+            searchIndexLoad.whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+                if (generation == collectionLoadGeneration) {
+                    searchCollection(query, collectionPanel, galleryMode);
+                }
+            }));
+            return;
+        }
+        if (searchIndexLoad.isCompletedExceptionally()) {
+            UIUtils.setErrorState(collectionPanel, "Collection search is unavailable.");
+            return;
+        }
+        long start = System.nanoTime();
+        List<Card> matches = collectionSearchIndex.search(query);
+        log.fine("Collection search for '" + query + "' found " + matches.size() + " cards in "
+                + (System.nanoTime() - start) / 1_000 + " µs");
+        displayCardList(matches.isEmpty() ? null : LazyListModel.of(matches), collectionPanel,
+                "No cards in your collection match \"" + query.strip() + "\".", galleryMode, null, this::showCollectionCard);
+    }
+
+    /**
+     * Discards the collection view when the user navigates away from it.
+     * Its model is disposed with the view, so no further pages are read, a count still in progress
+     * is ignored, and the collection is read again the next time it is shown.
+     * @param collectionPanel The JPanel within ViewCollectionPanel.
+     */
+    public void unloadCollectionView(JPanel collectionPanel) {
+        collectionLoadGeneration++;
+        UIUtils.setInitialState(collectionPanel, "Loading collection...");
+    }
+
     // --- Helper and Action Methods ---
 
     /**
      * Displays a list of cards in a target panel.
-     * Clears the panel, adds clickable CardListItem components for each card.
      * Handles empty list or null input by showing an appropriate message.
      *
      * @param cards The list of cards to display. Can be null or empty.
-     * @param targetPanel The JPanel to populate with card list items.
+     * @param targetPanel The JPanel to populate with the card list.
      * @param emptyMessage The message to display if the list is null or empty.
      */
     private void displayCardSearchResults(List<Card> cards, JPanel targetPanel, String emptyMessage) {
+        if (cards == null || cards.isEmpty()) {
+            displayCardList(null, targetPanel, emptyMessage, false, null, this::showCardFromList);
+            return;
+        }
+        // Search results carry current prices, a free snapshot for the owned ones
+        recordPrices(cards.stream().filter(card -> isCardInCollection(card.getId())).toList());
+        // Sort keys and facets are computed once here, re-sorting and filtering then stay in memory
+        CardResultEngine engine = new CardResultEngine(cards);
+        displayCardList(LazyListModel.of(cards), targetPanel, emptyMessage, false, engine, this::showCardFromList);
+    }
+
+    /**
+     * Displays a lazily loaded list of cards, with sort and filter controls if an engine over the cards is given.
+     *
+     * @param model The cards to display. Can be null or empty.
+     * @param targetPanel The JPanel to populate with the card list.
+     * @param emptyMessage The message to display if there are no cards.
+     * @param galleryMode true to show a grid of thumbnails instead of a list.
+     * @param engine The engine over the same cards, or null for no sort and filter controls.
+     * @param onCardClicked Shows the details of a clicked card.
+     */
+    private void displayCardList(LazyListModel model, JPanel targetPanel, String emptyMessage, boolean galleryMode,
+                                 CardResultEngine engine, Consumer<Card> onCardClicked) {
         // Ensure updates happen on the Event Dispatch Thread
         SwingUtilities.invokeLater(() -> {
             targetPanel.removeAll(); // Clear previous content (loading message, old results)
-            // Ensure layout is still BoxLayout for vertical stacking
-            targetPanel.setLayout(new BoxLayout(targetPanel, BoxLayout.Y_AXIS));
-
-            if (cards != null && !cards.isEmpty()) {
-                log.info("Displaying " + cards.size() + " cards in the list.");
-                for (Card card : cards) {
-                    // Create the list item panel for the card
-                    JPanel listItemPanel = CardComponentFactory.createCardListItem(card);
-
-                    // Add mouse listener to handle clicks on the list item
-                    listItemPanel.addMouseListener(new java.awt.event.MouseAdapter() {
-                        public void mouseClicked(java.awt.event.MouseEvent evt) {
-                            // When clicked, display the full details of this card
-                            // in the SearchByIdPanel's content area and navigate there.
-                            if (searchByIdPanel != null) {
-                                displayCardDetails(card, searchByIdPanel.getContentPanel());
-                                navigateTo("search"); // Navigate to the detail view screen
-                            } else {
-                                log.warning("SearchByIdPanel reference is null. Cannot navigate to details.");
-                            }
-                        }
-                        // Optional: Add hover effect (change background)
-                        @Override
-                        public void mouseEntered(java.awt.event.MouseEvent e) {
-                            listItemPanel.setBackground(CardGUI.PANEL_COLOR.brighter()); // Slightly lighter on hover
-                        }
-                        @Override
-                        public void mouseExited(java.awt.event.MouseEvent e) {
-                            listItemPanel.setBackground(CardGUI.PANEL_COLOR); // Restore original color
-                        }
-                    });
-                    targetPanel.add(listItemPanel);
-                    // Add a small vertical gap between items
-                    targetPanel.add(Box.createRigidArea(new Dimension(0, 5)));
+
+            if (model != null && model.getTotalSize() > 0) {
+                log.info("Displaying " + model.getTotalSize() + " cards in the list.");
+                // One view with a shared renderer, only the visible rows or tiles are laid out and painted
+                targetPanel.setLayout(new BorderLayout());
+                if (galleryMode) {
+                    targetPanel.add(new CardGalleryView(model, onCardClicked), BorderLayout.CENTER);
+                } else {
+                    CardResultsList resultsList = new CardResultsList(model, onCardClicked);
+                    resultsList.setOwnershipCheck(card -> isCardInCollection(card.getId()));
+                    // Results shown while the database is starting get their badges once the index is loaded
+                    whenCollectionReady(available -> resultsList.repaint());
+                    targetPanel.add(resultsList, BorderLayout.CENTER);
+                    if (engine != null) {
+                        targetPanel.add(new ResultRefinePanel(engine, resultsList), BorderLayout.NORTH);
+                    }
                 }
+                // Publish the rows in time-boxed chunks so input keeps flowing while a large result is added
+                model.revealIncrementally(RESULT_CHUNK_SIZE, RESULT_SLICE_BUDGET_MS);
             } else {
                 // If the list is null or empty, show the specified message
                 log.info("No cards to display. Showing empty message.");
@@ -350,9 +631,54 @@ public class CardController {
             // Refresh the panel layout
             targetPanel.revalidate();
             targetPanel.repaint();
+            // Drop thumbnail downloads of the previous results
+            ImageCache.refreshLoadPriorities();
         });
     }
 
+    /**
+     * Loads the full card behind a clicked collection row, which only holds the summary columns,
+     * and shows its details.
+     * @param summary The partial card of the clicked row.
+     */
+    private void showCollectionCard(Card summary) {
+        SwingWorker<Card, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Card doInBackground() {
+                return cardRepository.findDetailedById(summary.getId()).orElse(null);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    Card card = get();
+                    if (card != null) {
+                        showCardFromList(card);
+                    } else {
+                        UIUtils.showErrorMessage(cardContainer, "This card is no longer in your collection.");
+                    }
+                } catch (Exception ex) {
+                    log.log(Level.SEVERE, "Failed to load collection card " + summary.getId(), ex);
+                    UIUtils.showErrorMessage(cardContainer, "Error loading card: " + ex.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Displays the full details of a card clicked in a result list
+     * in the SearchByIdPanel's content area and navigates there.
+     * @param card The card that was clicked.
+     */
+    private void showCardFromList(Card card) {
+        if (searchByIdPanel != null) {
+            displayCardDetails(card, searchByIdPanel.getContentPanel());
+            navigateTo("search"); // Navigate to the detail view screen
+        } else {
+            log.warning("SearchByIdPanel reference is null. Cannot navigate to details.");
+        }
+    }
 
     /**
      * Updates the content panel of the SearchByIdPanel to show the details of a specific card.
@@ -369,16 +695,193 @@ public class CardController {
         log.info("Displaying details for card: " + card.getName() + " (" + card.getId() + ")");
         // Store the card being displayed (important for the checkbox action)
         currentlyDisplayedCard = card;
-        // Create the detailed card display panel using the factory
-        JPanel cardPanel = CardComponentFactory.createCardDisplayPanel(card, this);
-        // Update the target content panel with the new card detail panel
-        UIUtils.updateContentPanel(contentPanel, cardPanel);
+        // The detail view is built once and reused, only the card bound into it changes
+        if (cardDetailView == null) {
+            cardDetailView = new CardDetailView(this);
+        }
+        if (cardDetailView.getParent() != contentPanel) {
+            // First card, or the panel showed a loading or error message in between
+            UIUtils.updateContentPanel(contentPanel, cardDetailView);
+        }
+        cardDetailView.bind(card);
+        refreshOwnedCardPrice(card);
+    }
+
+    /**
+     * Takes over the current price of an owned card fetched from the API, if it differs from the stored one.
+     * The collection value follows straight away, the stored card is updated by the CollectionWriter.
+     * @param card A card that was just displayed.
+     */
+    private void refreshOwnedCardPrice(Card card) {
+        if (collectionValuation == null || !isCardInCollection(card.getId())) {
+            return;
+        }
+        recordPrices(List.of(card));
+        BigDecimal price = card.getCardMarket() != null && card.getCardMarket().getPriceInfo() != null
+                ? card.getCardMarket().getPriceInfo().getAverageSellPrice() : null;
+        if (price == null || !collectionValuation.isPriceChanged(card.getId(), price)) {
+            return; // Unchanged, or a card read from the collection itself
+        }
+        log.info("Refreshing the stored price of " + card.getId() + " to " + price);
+        BigDecimal previousPrice = collectionValuation.price(card.getId());
+        collectionValuation.put(card);
+        collectionSearchIndex.add(card);
+        collectionWriter.update(card, previousPrice);
+    }
+
+    /**
+     * Imports cards into the collection from an export file or a file of card ids, chosen by the user.
+     * The import runs in the background behind a progress monitor; the collection view is reloaded
+     * when it ends, also if it failed or was cancelled halfway, since the chunks written until then stay.
+     * @param collectionPanel The collection panel, reloaded afterwards.
+     * @param galleryMode true if the collection is shown as a thumbnail gallery.
+     */
+    public void importCollection(JPanel collectionPanel, boolean galleryMode) {
+        if (cardRepository == null) {
+            UIUtils.showErrorMessage(collectionPanel, "The collection database is not available.");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import cards (CSV or JSON Lines export, or one card ID per line)");
+        if (chooser.showOpenDialog(collectionPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        CollectionImporter importer = new CollectionImporter(cardRepository, collectionIndex, collectionWriter, chunk -> {
+            collectionSearchIndex.addAll(chunk);
+            collectionValuation.putAll(chunk);
+            recordPrices(chunk);
+        });
+        ProgressMonitor monitor = new ProgressMonitor(collectionPanel, "Importing " + file.getFileName(),
+                "Reading " + file.getFileName() + "...", 0, 1);
+        monitor.setMillisToDecideToPopup(0);
+
+        SwingWorker<CollectionImporter.ImportResult, int[]> worker = new SwingWorker<>() {
+            @Override
+            protected CollectionImporter.ImportResult doInBackground() throws Exception {
+                return importer.importFile(file, (processed, total, imported) -> {
+                    if (monitor.isCanceled()) {
+                        throw new CancellationException("Import cancelled");
+                    }
+                    publish(new int[]{processed, total, imported});
+                });
+            }
+
+            @Override
+            protected void process(List<int[]> chunks) {
+                int[] latest = chunks.get(chunks.size() - 1);
+                monitor.setMaximum(Math.max(1, latest[1]));
+                monitor.setProgress(latest[0]);
+                monitor.setNote(latest[0] * 100L / Math.max(1, latest[1]) + "% done, " + latest[2] + " cards imported");
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                try {
+                    CollectionImporter.ImportResult result = get();
+                    String message = "Imported " + result.imported() + " of " + result.requested() + " cards.";
+                    if (result.alreadyOwned() > 0) {
+                        message += "\n" + result.alreadyOwned() + " were already in the collection.";
+                    }
+                    if (!result.notFound().isEmpty()) {
+                        message += "\n" + result.notFound().size() + " IDs were not found, e.g. "
+                                + String.join(", ", result.notFound().subList(0, Math.min(5, result.notFound().size())));
+                    }
+                    JOptionPane.showMessageDialog(collectionPanel, message, "Import finished", JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() instanceof CompletionException
+                            ? ex.getCause().getCause() : ex.getCause();
+                    log.log(Level.SEVERE, "Import from " + file + " failed", ex);
+                    UIUtils.showErrorMessage(collectionPanel, "Import stopped, the cards imported until then were kept: "
+                            + (cause != null ? cause.getMessage() : ex.getMessage()));
+                }
+                if (collectionPanel.isShowing()) {
+                    loadCollectionView(collectionPanel, galleryMode);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Exports the collection to a CSV or JSON Lines file chosen by the user.
+     * Pending collection changes are written first, then the cards are streamed from the database
+     * into the file in the background, behind a progress monitor.
+     * @param collectionPanel The collection panel, parent of the dialogs.
+     */
+    public void exportCollection(JPanel collectionPanel) {
+        if (cardRepository == null) {
+            UIUtils.showErrorMessage(collectionPanel, "The collection database is not available.");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export collection");
+        FileNameExtensionFilter csvFilter =
+                new FileNameExtensionFilter("CSV (*.csv)", "csv");
+        FileNameExtensionFilter jsonLinesFilter =
+                new FileNameExtensionFilter("JSON Lines (*.jsonl)", "jsonl", "ndjson");
+        chooser.addChoosableFileFilter(csvFilter);
+        chooser.addChoosableFileFilter(jsonLinesFilter);
+        chooser.setFileFilter(csvFilter);
+        chooser.setSelectedFile(new File("collection.csv"));
+        if (chooser.showSaveDialog(collectionPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        // A name without an extension gets the one of the chosen format
+        if (!file.getFileName().toString().contains(".")) {
+            file = file.resolveSibling(file.getFileName() + (chooser.getFileFilter() == jsonLinesFilter ? ".jsonl" : ".csv"));
+        }
+        Path exportFile = file;
+        CollectionExporter.Format format = CollectionExporter.Format.forFile(exportFile);
+        CollectionExporter exporter = new CollectionExporter(cardRepository);
+        CollectionWriter writer = collectionWriter;
+        int total = Math.max(1, collectionIndex.size());
+        ProgressMonitor monitor = new ProgressMonitor(collectionPanel, "Exporting to " + exportFile.getFileName(),
+                "Writing pending changes...", 0, total);
+        monitor.setMillisToDecideToPopup(0);
+
+        SwingWorker<Integer, Integer> worker = new SwingWorker<>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                writer.flush();
+                return exporter.export(exportFile, format, written -> {
+                    if (monitor.isCanceled()) {
+                        throw new CancellationException("Export cancelled");
+                    }
+                    publish(written);
+                });
+            }
+
+            @Override
+            protected void process(List<Integer> chunks) {
+                int written = chunks.get(chunks.size() - 1);
+                monitor.setProgress(Math.min(written, total));
+                monitor.setNote("Exported " + written + " of " + total + " cards");
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                try {
+                    int written = get();
+                    JOptionPane.showMessageDialog(collectionPanel, "Exported " + written + " cards to " + exportFile + ".",
+                            "Export finished", JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception ex) {
+                    log.log(Level.SEVERE, "Export to " + exportFile + " failed", ex);
+                    UIUtils.showErrorMessage(collectionPanel, "Export failed, " + exportFile.getFileName()
+                            + " is incomplete: " + (ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage()));
+                }
+            }
+        };
+        worker.execute();
     }
 
     /**
      * Handles the action of toggling the 'Collected' checkbox in the card detail view.
-     * Saves or deletes the card from the database via the CardRepository.
-     * Reverts checkbox state and shows error message on failure.
+     * Queues the card to be saved or deleted by the CollectionWriter, without waiting for the database.
+     * If the write fails later, the change is rolled back and an error message is shown.
      * @param card The card associated with the checkbox action.
      * @param checkBox The JCheckBox component that was toggled.
      */
@@ -397,48 +900,65 @@ public class CardController {
             return;
         }
 
-        try {
-            if (checkBox.isSelected()) {
-                // Add card to collection
-                log.info("Saving card to collection: " + card.getId() + " - " + card.getName());
-                cardRepository.save(card);
-                log.info("Card saved successfully.");
-                // Optional: Show success feedback briefly?
+        // Optimistic: the index and the checkbox change now, the write happens in the background
+        if (checkBox.isSelected()) {
+            log.info("Saving card to collection: " + card.getId() + " - " + card.getName());
+            collectionIndex.add(card.getId());
+            collectionSearchIndex.add(card);
+            collectionValuation.put(card);
+            recordPrices(List.of(card));
+            collectionWriter.add(card);
+        } else {
+            log.info("Removing card from collection: " + card.getId() + " - " + card.getName());
+            collectionIndex.remove(card.getId());
+            collectionSearchIndex.remove(card.getId());
+            collectionValuation.remove(card.getId());
+            collectionWriter.delete(card);
+        }
+    }
+
+    /**
+     * Rolls back collection changes that could not be written, called on the EDT.
+     * @param changes The failed changes, none of them superseded by a newer toggle.
+     * @param error The reason the write failed.
+     */
+    private void collectionWriteFailed(List<CollectionWriter.Change> changes, Exception error) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (CollectionWriter.Change change : changes) {
+            // Back to what the database still holds
+            String cardId = change.card().getId();
+            if (change.wasStored()) {
+                // Still owned, with the price it is stored with
+                collectionIndex.add(cardId);
+                collectionSearchIndex.add(change.card());
+                collectionValuation.put(change.card());
+                collectionValuation.setPrice(cardId, change.previousPrice());
             } else {
-                // Remove card from collection
-                log.info("Removing card from collection: " + card.getId() + " - " + card.getName());
-                cardRepository.deleteById(card.getId());
-                log.info("Card removed successfully.");
-                // Optional: Show success feedback briefly?
+                collectionIndex.remove(cardId);
+                collectionSearchIndex.remove(cardId);
+                collectionValuation.remove(cardId);
+            }
+            if (cardDetailView != null) {
+                cardDetailView.collectionChanged(cardId);
             }
-        } catch (Exception dbEx) {
-            // Handle database errors
-            log.log(Level.SEVERE, "Database operation failed for card " + card.getId(), dbEx);
-            UIUtils.showErrorMessage(checkBox.getParent(), "Database error: " + dbEx.getMessage());
-            // IMPORTANT: Revert checkbox state on error
-            checkBox.setSelected(!checkBox.isSelected());
         }
+        if (cardContainer != null) {
+            cardContainer.repaint(); // Owned badges
+        }
+        UIUtils.showErrorMessage(cardContainer, "Database error, " + changes.size()
+                + " collection change(s) were not saved: " + error.getMessage());
     }
 
     /**
-     * Checks if a card with the given ID exists in the collection database.
-     * Used by CardComponentFactory to set the initial state of the 'Collected' checkbox.
+     * Checks if a card with the given ID is in the collection.
+     * Answered from the in-memory collection index, so it is cheap enough for every rendered row.
      * @param cardId The ID of the card to check.
-     * @return true if the card exists in the repository, false otherwise or on error.
+     * @return true if the card is in the collection, false otherwise or while the database is starting.
      */
     public boolean isCardInCollection(String cardId) {
-        if (cardRepository == null) {
-            log.warning("CardRepository is null in isCardInCollection check.");
-            return false;
-        }
-        try {
-            // Use the repository's existsById method
-            return cardRepository.existsById(cardId);
-        } catch (Exception dbEx) {
-            // Log database errors during the check
-            log.log(Level.SEVERE, "Failed to check collection status for card " + cardId, dbEx);
-            return false; // Assume not collected on error
-        }
+        return collectionIndex != null && collectionIndex.contains(cardId);
     }
 
     /**
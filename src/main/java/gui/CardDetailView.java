@@ -0,0 +1,348 @@
+package gui;
+
+import data.Card;
+import data.PricePoint;
+import util.ImageCache;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The card detail view: image, details and the collected checkbox.
+ * Its components are built once and each card is bound into them, only changing the texts and
+ * rows that differ from the previous card, so flipping between cards allocates almost nothing
+ * and only re-lays out what changed.
+ */
+public class CardDetailView extends JPanel {
+    // Height the detail image is loaded at
+    private static final int DETAIL_IMAGE_HEIGHT = 420;
+
+    // Detail image tiers, a shown tier is only ever replaced by a higher one
+    private static final int TIER_PREVIEW = 1;
+    private static final int TIER_SMALL = 2;
+    private static final int TIER_LARGE = 3;
+
+    // How long a card has to stay open before its large image is requested
+    private static final int LARGE_IMAGE_DELAY_MS = 250;
+    // Points of price history read for the chart, about one per pixel column
+    private static final int PRICE_CHART_POINTS = 300;
+
+    private final CardController controller;
+    private final JLabel imageLabel = new JLabel();
+    private final JLabel nameLabel = new JLabel();
+    private final DetailRow idRow = new DetailRow("Card ID:");
+    private final DetailRow supertypeRow = new DetailRow("Supertype:");
+    private final DetailRow typesRow = new DetailRow("Types:");
+    private final DetailRow subtypesRow = new DetailRow("Subtypes:");
+    private final DetailRow setRow = new DetailRow("Set:");
+    private final DetailRow seriesRow = new DetailRow("Set Series:");
+    private final DetailRow numberRow = new DetailRow("Number:");
+    private final DetailRow rarityRow = new DetailRow("Rarity:");
+    private final DetailRow priceRow = new DetailRow("Market Price:");
+    private final JCheckBox collectedCheckBox = new JCheckBox("Collected");
+    private final JLabel priceHistoryLabel = new JLabel("Price history");
+    private final PriceChart priceChart = new PriceChart();
+    private final JScrollPane detailsScrollPane;
+
+    private Card card;
+    // Identifies the current card's image loads, callbacks for an earlier card are ignored
+    private ImageLoad imageLoad;
+    // Identifies the current card's price history read, a late result for an earlier card is ignored
+    private Object historyLoad;
+
+    /**
+     * Creates an empty detail view, see {@link #bind(Card)}.
+     * @param controller The controller handling the collected checkbox.
+     */
+    public CardDetailView(CardController controller) {
+        super(new BorderLayout(10, 10));
+        this.controller = controller;
+        setBackground(CardGUI.BACKGROUND_COLOR);
+        setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        // Card image panel (left side)
+        JPanel imagePanel = new JPanel(new BorderLayout());
+        imagePanel.setBackground(CardGUI.BACKGROUND_COLOR);
+        imagePanel.setBorder(new EmptyBorder(0, 0, 0, 10));
+        imagePanel.setPreferredSize(new Dimension(300, 450));
+        imageLabel.setHorizontalAlignment(JLabel.CENTER);
+        imageLabel.setForeground(CardGUI.TEXT_COLOR);
+        imagePanel.add(imageLabel, BorderLayout.CENTER);
+        add(imagePanel, BorderLayout.WEST);
+
+        // Card details panel (right side)
+        JPanel detailsPanel = new JPanel();
+        detailsPanel.setLayout(new BoxLayout(detailsPanel, BoxLayout.Y_AXIS));
+        detailsPanel.setBackground(CardGUI.BACKGROUND_COLOR);
+        detailsPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 0));
+
+        nameLabel.setFont(new Font("SansSerif", Font.BOLD, 20));
+        nameLabel.setForeground(CardGUI.TITLE_COLOR);
+        nameLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        detailsPanel.add(nameLabel);
+        detailsPanel.add(Box.createRigidArea(new Dimension(0, 15)));
+
+        for (DetailRow row : List.of(idRow, supertypeRow, typesRow, subtypesRow, setRow, seriesRow,
+                numberRow, rarityRow, priceRow)) {
+            detailsPanel.add(row);
+        }
+
+        detailsPanel.add(Box.createRigidArea(new Dimension(0, 20)));
+        collectedCheckBox.setFont(new Font("SansSerif", Font.BOLD, 14));
+        collectedCheckBox.setForeground(CardGUI.TEXT_COLOR);
+        collectedCheckBox.setBackground(CardGUI.BACKGROUND_COLOR);
+        collectedCheckBox.setAlignmentX(Component.LEFT_ALIGNMENT);
+        // One listener for the lifetime of the view, acting on whichever card is bound
+        collectedCheckBox.addActionListener(e -> {
+            if (card != null) {
+                controller.toggleCardCollection(card, collectedCheckBox);
+            }
+        });
+        // The database may still be starting, the checkbox is enabled once it is ready
+        controller.whenCollectionReady(available -> {
+            if (card != null) {
+                bindCollected();
+            }
+        });
+        detailsPanel.add(collectedCheckBox);
+
+        // Price history of collected cards, hidden until there is some
+        detailsPanel.add(Box.createRigidArea(new Dimension(0, 15)));
+        priceHistoryLabel.setFont(new Font("SansSerif", Font.BOLD, 14));
+        priceHistoryLabel.setForeground(CardGUI.TEXT_COLOR);
+        priceHistoryLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        priceHistoryLabel.setBorder(new EmptyBorder(0, 0, 5, 0));
+        priceChart.setAlignmentX(Component.LEFT_ALIGNMENT);
+        priceHistoryLabel.setVisible(false);
+        priceChart.setVisible(false);
+        detailsPanel.add(priceHistoryLabel);
+        detailsPanel.add(priceChart);
+        detailsPanel.add(Box.createVerticalGlue());
+
+        detailsScrollPane = new JScrollPane(detailsPanel);
+        detailsScrollPane.setBorder(BorderFactory.createEmptyBorder());
+        detailsScrollPane.setBackground(CardGUI.BACKGROUND_COLOR);
+        detailsScrollPane.getViewport().setBackground(CardGUI.BACKGROUND_COLOR);
+        detailsScrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
+        detailsScrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+        add(detailsScrollPane, BorderLayout.CENTER);
+    }
+
+    /**
+     * Shows a card in the view, reusing its components.
+     * @param card The card to show.
+     */
+    public void bind(Card card) {
+        this.card = card;
+        setText(nameLabel, card.getName());
+
+        idRow.bind(card.getId());
+        supertypeRow.bind(card.getSupertype());
+        typesRow.bind(card.getTypes() != null ? String.join(", ", card.getTypes()) : null);
+        subtypesRow.bind(card.getSubtypes() != null ? String.join(", ", card.getSubtypes()) : null);
+        if (card.getSetInfo() != null) {
+            setRow.bind(card.getSetInfo().getSetName() + " (" + card.getSetInfo().getSetId() + ")");
+            seriesRow.bind(card.getSetInfo().getSeries());
+        } else {
+            setRow.bind(null);
+            seriesRow.bind(null);
+        }
+        numberRow.bind(card.getNumber());
+        rarityRow.bind(card.getRarity());
+
+        // Card market info
+        if (card.getCardMarket() != null && card.getCardMarket().getPriceInfo() != null
+                && card.getCardMarket().getPriceInfo().getAverageSellPrice() != null) {
+            priceRow.bind("Market Price (Low):", "€" + card.getCardMarket().getPriceInfo().getAverageSellPrice().toString());
+        } else {
+            priceRow.bind("Market Price:", "N/A");
+        }
+
+        bindCollected();
+        bindPriceHistory();
+        detailsScrollPane.getViewport().setViewPosition(new Point(0, 0));
+
+        // The previous card's image downloads are cancelled unless they have started
+        imageLoad = new ImageLoad();
+        ImageCache.refreshLoadPriorities();
+        if (card.getImageInfo() != null && card.getImageInfo().getLarge() != null) {
+            setText(imageLabel, null);
+            imageLabel.setIcon(null);
+            loadDetailImage(card.getImageInfo().getSmall(), card.getImageInfo().getLarge(), imageLoad);
+        } else {
+            imageLabel.setIcon(null);
+            setText(imageLabel, "No image available");
+        }
+    }
+
+    /**
+     * Refreshes the collected checkbox if the given card is shown, e.g. after a change to it was rolled back.
+     * @param cardId The id of the card whose collection state changed.
+     */
+    public void collectionChanged(String cardId) {
+        if (card != null && card.getId().equals(cardId)) {
+            bindCollected();
+        }
+    }
+
+    private void bindCollected() {
+        collectedCheckBox.setEnabled(controller.isCollectionAvailable());
+        collectedCheckBox.setSelected(controller.isCollectionAvailable() && controller.isCardInCollection(card.getId()));
+    }
+
+    // Reads the price history of a collected card in the background and shows it once it arrives
+    private void bindPriceHistory() {
+        Object load = new Object();
+        historyLoad = load;
+        if (!controller.isCardInCollection(card.getId())) {
+            showPriceHistory(List.of());
+            return;
+        }
+        controller.loadPriceHistory(card.getId(), PRICE_CHART_POINTS).whenComplete((points, error) ->
+                SwingUtilities.invokeLater(() -> {
+                    if (load == historyLoad) {
+                        showPriceHistory(points != null ? points : List.of());
+                    }
+                }));
+    }
+
+    private void showPriceHistory(List<PricePoint> points) {
+        boolean visible = !points.isEmpty();
+        priceChart.setPoints(points);
+        if (priceChart.isVisible() != visible) {
+            priceHistoryLabel.setVisible(visible);
+            priceChart.setVisible(visible);
+        }
+    }
+
+    // JLabel revalidates on every setText, skip it when the text is unchanged
+    private static void setText(JLabel label, String text) {
+        if (!Objects.equals(label.getText(), text)) {
+            label.setText(text);
+        }
+    }
+
+    // Shows the best image already cached for the card right away and upgrades it as better ones arrive
+    private void loadDetailImage(String smallUrl, String largeUrl, ImageLoad load) {
+        // The large image may be cached from an earlier visit
+        Image cachedLarge = ImageCache.getCachedImage(largeUrl, -1, DETAIL_IMAGE_HEIGHT);
+        if (cachedLarge != null) {
+            showImageTier(load, TIER_LARGE, cachedLarge);
+            return;
+        }
+
+        // Otherwise start from the small image, or blow up the list thumbnail as a blurred preview
+        Image smallImage = ImageCache.getCachedImage(smallUrl, -1, DETAIL_IMAGE_HEIGHT);
+        if (smallImage != null) {
+            showImageTier(load, TIER_SMALL, smallImage);
+        } else {
+            if (ImageCache.getCachedImage(smallUrl, CardResultsList.THUMBNAIL_WIDTH, -1) instanceof BufferedImage thumbnail) {
+                showImageTier(load, TIER_PREVIEW, ImageCache.scaleToBufferedImage(thumbnail, -1, DETAIL_IMAGE_HEIGHT));
+            }
+            if (smallUrl != null) {
+                ImageCache.loadImageAsync(smallUrl, -1, DETAIL_IMAGE_HEIGHT, load,
+                        image -> showImageTier(load, TIER_SMALL, image));
+            }
+        }
+
+        if (load.shownTier == 0) {
+            // Nothing to show yet, fetch the large image straight away
+            Image placeholder = ImageCache.loadImageAsync(largeUrl, -1, DETAIL_IMAGE_HEIGHT, load,
+                    image -> showImageTier(load, TIER_LARGE, image));
+            if (load.shownTier == 0) {
+                imageLabel.setIcon(new ImageIcon(placeholder));
+            }
+            return;
+        }
+
+        // Only fetch the large image once the card stays open, so flipping through cards stays on the low-res tier
+        Timer largeImageTimer = new Timer(LARGE_IMAGE_DELAY_MS, e -> {
+            if (load == imageLoad && imageLabel.isShowing()) {
+                ImageCache.loadImageAsync(largeUrl, -1, DETAIL_IMAGE_HEIGHT, load,
+                        image -> showImageTier(load, TIER_LARGE, image));
+            }
+        });
+        largeImageTimer.setRepeats(false);
+        largeImageTimer.start();
+    }
+
+    // Replaces the shown image only with a better tier; a failed load only shows up if nothing else is shown
+    private void showImageTier(ImageLoad load, int tier, Image image) {
+        if (load != imageLoad || tier <= load.shownTier) {
+            // Meant for a card that is no longer shown, or not an improvement
+            return;
+        }
+        if (!ImageCache.isErrorImage(image)) {
+            load.shownTier = tier;
+        } else if (load.shownTier > 0) {
+            return;
+        }
+        imageLabel.setIcon(new ImageIcon(image));
+        imageLabel.revalidate();
+        imageLabel.repaint();
+    }
+
+    /**
+     * The image loads started for one bound card, and the owner of their downloads:
+     * they are no longer wanted once another card is bound.
+     */
+    private final class ImageLoad implements ImageCache.LoadOwner {
+        private int shownTier;
+
+        @Override
+        public int loadPriority() {
+            if (this != imageLoad) {
+                return DISCARDED;
+            }
+            return imageLabel.isShowing() ? VISIBLE : FAR;
+        }
+    }
+
+    /**
+     * A label-value row, hidden while it has no value.
+     */
+    private static final class DetailRow extends JPanel {
+        private final JLabel labelComponent;
+        private final JLabel valueComponent = new JLabel();
+
+        private DetailRow(String label) {
+            super(new BorderLayout(5, 0));
+            setBackground(CardGUI.BACKGROUND_COLOR);
+            // Bottom padding takes the place of a spacer, so hidden rows leave no gap
+            setBorder(new EmptyBorder(0, 0, 3, 0));
+            setMaximumSize(new Dimension(Integer.MAX_VALUE, 28));
+            setAlignmentX(Component.LEFT_ALIGNMENT);
+
+            labelComponent = new JLabel(label);
+            labelComponent.setFont(new Font("SansSerif", Font.BOLD, 12));
+            labelComponent.setForeground(CardGUI.TEXT_COLOR);
+            labelComponent.setPreferredSize(new Dimension(80, 20));
+
+            valueComponent.setFont(new Font("SansSerif", Font.PLAIN, 12));
+            valueComponent.setForeground(CardGUI.TEXT_COLOR);
+            valueComponent.setPreferredSize(new Dimension(100, 20));
+
+            add(labelComponent, BorderLayout.WEST);
+            add(valueComponent, BorderLayout.CENTER);
+        }
+
+        private void bind(String value) {
+            bind(labelComponent.getText(), value);
+        }
+
+        private void bind(String label, String value) {
+            boolean hasValue = value != null && !value.isEmpty();
+            if (isVisible() != hasValue) {
+                setVisible(hasValue);
+            }
+            if (hasValue) {
+                setText(labelComponent, label);
+                setText(valueComponent, value);
+            }
+        }
+    }
+}
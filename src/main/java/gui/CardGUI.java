@@ -3,6 +3,8 @@ package gui;
 import api.APIGet; // Assuming APIGet uses WebClient now as per previous steps
 import data.Card;
 import database.CardRepository; // Import the repository
+import database.CollectionServices;
+import util.EdtWatchdog;
 import util.ImageCache;
 import util.LazyListModel;
 
@@ -15,6 +17,7 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level; // Import Level for logging
 import lombok.extern.java.Log; // Assuming Lombok @Log for java.util.logging
 
@@ -43,17 +46,25 @@ public class CardGUI extends JFrame {
      */
     public CardGUI(CardRepository cardRepository) {
         this.cardRepository = cardRepository;
-        initController(); // Initialize controller first
+        this.cardController = new CardController(cardRepository);
         initLookAndFeel(); // Apply theme
         initUI(); // Setup frame and panels
         currentlyDisplayedCard = null;
     }
 
     /**
-     * Initializes the CardController.
+     * Constructor for CardGUI that does not wait for the database.
+     * The window is usable right away, collection features light up once the database is ready.
+     * @param collectionServices Completes with the collection services once the database has started.
      */
-    private void initController() {
-        this.cardController = new CardController(cardRepository);
+    public CardGUI(CompletableFuture<CollectionServices> collectionServices) {
+        CollectionServices services = collectionServices.isDone() && !collectionServices.isCompletedExceptionally()
+                ? collectionServices.join() : null;
+        this.cardRepository = services != null ? services.cardRepository() : null;
+        this.cardController = new CardController(collectionServices);
+        initLookAndFeel(); // Apply theme
+        initUI(); // Setup frame and panels
+        currentlyDisplayedCard = null;
     }
 
     /**
@@ -138,6 +149,12 @@ public class CardGUI extends JFrame {
 
         // Show the welcome screen initially
         cardLayout.show(cardContainer, "welcome");
+
+        // Ctrl+Shift+D logs the EDT watchdog report, when the watchdog is enabled
+        if (EdtWatchdog.isInstalled()) {
+            getRootPane().registerKeyboardAction(e -> log.info(EdtWatchdog.report()),
+                    KeyStroke.getKeyStroke("ctrl shift D"), JComponent.WHEN_IN_FOCUSED_WINDOW);
+        }
     }
 
     private JPanel createWelcomeScreen() {
@@ -0,0 +1,337 @@
+package gui;
+
+import data.Card;
+import util.ImageCache;
+import util.LazyListModel;
+
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Virtualized grid of card thumbnails, used as the gallery mode of the collection view.
+ * Tiles have a fixed size, so the visible tile range follows directly from the scroll offset.
+ * Only those tiles are painted, all through one recycled tile renderer, and the thumbnails
+ * of the next rows are fetched ahead of scrolling. Scrolling moves by whole tile rows.
+ */
+public class CardGalleryView extends JComponent implements Scrollable {
+    // Tile geometry
+    static final int THUMBNAIL_WIDTH = 130;
+    private static final int TILE_WIDTH = 150;
+    private static final int TILE_HEIGHT = 230;
+    private static final int GAP = 10;
+    // Rows below the visible ones whose thumbnails are fetched ahead of time
+    private static final int PREFETCH_ROWS = 2;
+
+    private final LazyListModel model;
+    private final ThumbnailLoader thumbnails = new ThumbnailLoader(this, THUMBNAIL_WIDTH, 128, this::tilePriority);
+    private final TileRenderer tileRenderer = new TileRenderer();
+    private final CellRendererPane rendererPane = new CellRendererPane();
+    private final ChangeListener viewportListener = e -> viewportChanged();
+    private final ListDataListener modelListener = new ListDataListener() {
+        @Override
+        public void intervalAdded(ListDataEvent e) {
+            revalidate();
+            repaint();
+        }
+
+        @Override
+        public void intervalRemoved(ListDataEvent e) {
+            revalidate();
+            repaint();
+        }
+
+        @Override
+        public void contentsChanged(ListDataEvent e) {
+            repaint();
+        }
+    };
+    private JViewport viewport;
+    private int columns = 1;
+    private int rolloverIndex = -1;
+    // The tiles inside the viewport, -1 until the first layout
+    private int firstVisibleIndex = -1;
+    private int lastVisibleIndex = -1;
+
+    /**
+     * Creates a gallery over a lazily loaded model.
+     * @param model The model providing the cards; tiles show a loading state until their page arrives.
+     * @param onCardClicked Called with the card when a tile is clicked.
+     */
+    public CardGalleryView(LazyListModel model, Consumer<Card> onCardClicked) {
+        this.model = model;
+        setOpaque(true);
+        setBackground(CardGUI.BACKGROUND_COLOR);
+        setCursor(new Cursor(Cursor.HAND_CURSOR));
+        add(rendererPane);
+        model.addListDataListener(modelListener);
+        model.setPageListener(new LazyListModel.PageListener() {
+            @Override
+            public void pageLoaded(int offset, List<Card> cards) {
+                for (int i = 0; i < cards.size(); i++) {
+                    thumbnails.prefetch(cards.get(i), offset + i);
+                }
+            }
+
+            @Override
+            public void pageEvicted(int offset, List<Card> cards) {
+                thumbnails.discard(cards);
+            }
+        });
+
+        MouseAdapter mouseHandler = new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = tileAt(e.getPoint());
+                Card card = index >= 0 ? model.getElementAt(index) : null;
+                if (card != null) {
+                    onCardClicked.accept(card);
+                }
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                setRolloverIndex(tileAt(e.getPoint()));
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                setRolloverIndex(-1);
+            }
+        };
+        addMouseListener(mouseHandler);
+        addMouseMotionListener(mouseHandler);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+        if (viewport != null) {
+            viewport.addChangeListener(viewportListener);
+        }
+        SwingUtilities.invokeLater(this::viewportChanged);
+    }
+
+    @Override
+    public void removeNotify() {
+        // The gallery is being discarded, stop its model from loading any further pages
+        if (viewport != null) {
+            viewport.removeChangeListener(viewportListener);
+            viewport = null;
+        }
+        model.removeListDataListener(modelListener);
+        model.dispose();
+        super.removeNotify();
+    }
+
+    /**
+     * The height depends on how many columns fit the width of the enclosing viewport.
+     */
+    @Override
+    public Dimension getPreferredSize() {
+        int width = viewport != null ? viewport.getExtentSize().width : getWidth();
+        int columnCount = columnsFor(width);
+        int rows = (model.getSize() + columnCount - 1) / columnCount;
+        return new Dimension(Math.max(width, TILE_WIDTH + 2 * GAP), rows * (TILE_HEIGHT + GAP) + GAP);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    /**
+     * Scrolls to the start of the next or previous tile row.
+     */
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        if (orientation == SwingConstants.HORIZONTAL) {
+            return TILE_WIDTH + GAP;
+        }
+        int rowHeight = TILE_HEIGHT + GAP;
+        int intoRow = Math.floorMod(visibleRect.y, rowHeight);
+        if (direction > 0) {
+            return rowHeight - intoRow;
+        }
+        return intoRow == 0 ? rowHeight : intoRow;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    // The columns follow the viewport width
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport parentViewport && parentViewport.getHeight() > getPreferredSize().height;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        // Only the rows crossing the clip are painted
+        int size = model.getSize();
+        int firstRow = Math.max(0, (clip.y - GAP) / (TILE_HEIGHT + GAP));
+        int lastRow = (clip.y + clip.height) / (TILE_HEIGHT + GAP);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = 0; column < columns; column++) {
+                int index = row * columns + column;
+                if (index >= size) {
+                    return;
+                }
+                Rectangle bounds = tileBounds(index);
+                tileRenderer.bind(model.getElementAt(index), index, index == rolloverIndex);
+                rendererPane.paintComponent(g, tileRenderer, this, bounds.x, bounds.y, bounds.width, bounds.height, true);
+            }
+        }
+    }
+
+    @Override
+    public void doLayout() {
+        columns = columnsFor(getWidth());
+    }
+
+    private void viewportChanged() {
+        if (viewport == null || model.getSize() == 0) {
+            return;
+        }
+        // Columns follow the viewport width, re-layout when they change
+        if (columnsFor(viewport.getExtentSize().width) != columns) {
+            revalidate();
+        }
+        Rectangle visible = SwingUtilities.convertRectangle(viewport, new Rectangle(viewport.getExtentSize()), this);
+        int firstRow = Math.max(0, visible.y / (TILE_HEIGHT + GAP));
+        int lastRow = Math.max(firstRow, (visible.y + visible.height) / (TILE_HEIGHT + GAP));
+        int first = Math.min(model.getSize() - 1, firstRow * columns);
+        int last = Math.min(model.getSize() - 1, (lastRow + 1) * columns - 1);
+        model.setVisibleRange(first, last);
+        firstVisibleIndex = first;
+        lastVisibleIndex = last;
+
+        // Fetch the next rows' thumbnails ahead of scrolling, if their cards are already resident
+        int prefetchEnd = Math.min(model.getSize() - 1, last + PREFETCH_ROWS * columns);
+        for (int index = last + 1; index <= prefetchEnd; index++) {
+            thumbnails.prefetch(model.getElementAt(index), index);
+        }
+    }
+
+    // Visible tiles load first, then the prefetch rows on either side; tiles beyond those are cancelled
+    private int tilePriority(int index) {
+        if (!isShowing()) {
+            return ImageCache.LoadOwner.FAR;
+        }
+        if (firstVisibleIndex < 0) {
+            // Not laid out yet
+            return ImageCache.LoadOwner.NEAR;
+        }
+        if (index >= firstVisibleIndex && index <= lastVisibleIndex) {
+            return ImageCache.LoadOwner.VISIBLE;
+        }
+        int window = PREFETCH_ROWS * columns;
+        return index >= firstVisibleIndex - window && index <= lastVisibleIndex + window
+                ? ImageCache.LoadOwner.NEAR : ImageCache.LoadOwner.DISCARDED;
+    }
+
+    private static int columnsFor(int width) {
+        return Math.max(1, (width - GAP) / (TILE_WIDTH + GAP));
+    }
+
+    private Rectangle tileBounds(int index) {
+        int row = index / columns;
+        int column = index % columns;
+        return new Rectangle(GAP + column * (TILE_WIDTH + GAP), GAP + row * (TILE_HEIGHT + GAP), TILE_WIDTH, TILE_HEIGHT);
+    }
+
+    private int tileAt(Point point) {
+        int column = (point.x - GAP) / (TILE_WIDTH + GAP);
+        int row = (point.y - GAP) / (TILE_HEIGHT + GAP);
+        if (point.x < GAP || point.y < GAP || column >= columns) {
+            return -1;
+        }
+        int index = row * columns + column;
+        if (index >= model.getSize() || !tileBounds(index).contains(point)) {
+            return -1;
+        }
+        return index;
+    }
+
+    private void setRolloverIndex(int index) {
+        if (index == rolloverIndex) {
+            return;
+        }
+        if (rolloverIndex >= 0) {
+            repaint(tileBounds(rolloverIndex));
+        }
+        rolloverIndex = index;
+        if (rolloverIndex >= 0) {
+            repaint(tileBounds(rolloverIndex));
+        }
+    }
+
+    /**
+     * The single component used to paint every tile.
+     */
+    private class TileRenderer extends JPanel {
+        private final ThumbnailLoader.ThumbnailIcon thumbnailIcon = new ThumbnailLoader.ThumbnailIcon();
+        private final JLabel imageLabel = new JLabel();
+        private final JLabel nameLabel = new JLabel();
+
+        private TileRenderer() {
+            super(new BorderLayout(0, 4));
+            setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+
+            imageLabel.setHorizontalAlignment(JLabel.CENTER);
+            imageLabel.setForeground(CardGUI.TEXT_COLOR);
+            imageLabel.setFont(new Font("SansSerif", Font.PLAIN, 10));
+
+            nameLabel.setHorizontalAlignment(JLabel.CENTER);
+            nameLabel.setFont(new Font("SansSerif", Font.BOLD, 12));
+            nameLabel.setForeground(CardGUI.TEXT_COLOR);
+
+            add(imageLabel, BorderLayout.CENTER);
+            add(nameLabel, BorderLayout.SOUTH);
+        }
+
+        private void bind(Card card, int index, boolean rollover) {
+            setBackground(rollover ? CardGUI.PANEL_COLOR.brighter() : CardGUI.PANEL_COLOR);
+            if (card == null) {
+                // Its page has not arrived yet
+                nameLabel.setText("Loading...");
+                imageLabel.setIcon(null);
+                imageLabel.setText("");
+                return;
+            }
+            nameLabel.setText(card.getName());
+
+            String imageUrl = card.getImageInfo() != null ? card.getImageInfo().getSmall() : null;
+            Image thumbnail = imageUrl != null ? thumbnails.get(imageUrl, index) : null;
+            if (thumbnail != null) {
+                thumbnailIcon.setImage(thumbnail);
+                imageLabel.setIcon(thumbnailIcon);
+                imageLabel.setText(null);
+            } else {
+                imageLabel.setIcon(null);
+                imageLabel.setText(imageUrl == null ? "No Img" : thumbnails.hasFailed(imageUrl) ? "N/A" : "");
+            }
+        }
+    }
+}
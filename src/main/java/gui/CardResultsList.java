@@ -0,0 +1,283 @@
+package gui;
+
+import data.Card;
+import util.ImageCache;
+import util.LazyListModel;
+
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Virtualized list of cards used for search results and the collection.
+ * All rows share one renderer and have a fixed height, so layout and painting only ever
+ * touch the rows inside the visible area, however many cards the list holds.
+ */
+public class CardResultsList extends JList<Card> {
+    // Row geometry, matching the old per-card list items
+    private static final int ROW_HEIGHT = 106;
+    private static final int MIN_ROW_WIDTH = 300;
+    static final int THUMBNAIL_WIDTH = 60;
+    private static final int THUMBNAIL_HEIGHT = 80;
+
+    private LazyListModel lazyModel;
+    private final ThumbnailLoader thumbnails = new ThumbnailLoader(this, THUMBNAIL_WIDTH, 64, this::rowPriority);
+    // Starts fetching thumbnails as soon as a page of cards is available, and gives them up when it is evicted
+    private final LazyListModel.PageListener pageListener = new LazyListModel.PageListener() {
+        @Override
+        public void pageLoaded(int offset, List<Card> cards) {
+            for (int i = 0; i < cards.size(); i++) {
+                thumbnails.prefetch(cards.get(i), offset + i);
+            }
+        }
+
+        @Override
+        public void pageEvicted(int offset, List<Card> cards) {
+            thumbnails.discard(cards);
+        }
+    };
+    private final CardCellRenderer renderer = new CardCellRenderer();
+    // Keeps the model's window in step with scrolling while the list is in a scroll pane
+    private final ChangeListener viewportListener = e -> updateVisibleRange();
+    private JViewport viewport;
+    private int rolloverIndex = -1;
+    // Decides which rows get the "Owned" badge, must be cheap since it runs for every painted row
+    private Predicate<Card> ownershipCheck = card -> false;
+
+    /**
+     * Creates a list showing the given cards.
+     * @param cards The cards to show.
+     * @param onCardClicked Called with the card when a row is clicked.
+     */
+    public CardResultsList(List<Card> cards, Consumer<Card> onCardClicked) {
+        this(LazyListModel.of(cards), onCardClicked);
+    }
+
+    /**
+     * Creates a list over a lazily loaded model.
+     * @param model The model providing the cards; rows show a loading state until their page arrives.
+     * @param onCardClicked Called with the card when a row is clicked.
+     */
+    public CardResultsList(LazyListModel model, Consumer<Card> onCardClicked) {
+        super(model);
+        this.lazyModel = model;
+        model.setPageListener(pageListener);
+        setBackground(CardGUI.BACKGROUND_COLOR);
+        setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // Fixed cell sizes keep the list from measuring every row
+        setFixedCellHeight(ROW_HEIGHT);
+        setFixedCellWidth(MIN_ROW_WIDTH);
+        setCellRenderer(renderer);
+        setCursor(new Cursor(Cursor.HAND_CURSOR));
+
+        MouseAdapter mouseHandler = new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = rowAt(e.getPoint());
+                Card card = index >= 0 ? getModel().getElementAt(index) : null;
+                if (card != null) {
+                    onCardClicked.accept(card);
+                }
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                setRolloverIndex(rowAt(e.getPoint()));
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                setRolloverIndex(-1);
+            }
+        };
+        addMouseListener(mouseHandler);
+        addMouseMotionListener(mouseHandler);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+        if (viewport != null) {
+            viewport.addChangeListener(viewportListener);
+        }
+        SwingUtilities.invokeLater(this::updateVisibleRange);
+    }
+
+    @Override
+    public void removeNotify() {
+        // The list is being discarded, stop its model from loading any further pages
+        if (viewport != null) {
+            viewport.removeChangeListener(viewportListener);
+            viewport = null;
+        }
+        lazyModel.dispose();
+        super.removeNotify();
+    }
+
+    /**
+     * Sets how rows find out whether their card is in the collection.
+     * @param ownershipCheck Returns true for owned cards; called while painting, so it must not block.
+     */
+    public void setOwnershipCheck(Predicate<Card> ownershipCheck) {
+        this.ownershipCheck = ownershipCheck;
+        repaint();
+    }
+
+    /**
+     * Replaces the cards shown, e.g. after the results were re-sorted or filtered.
+     * The previous model is disposed.
+     * @param model The new model.
+     */
+    public void setLazyModel(LazyListModel model) {
+        lazyModel.dispose();
+        lazyModel = model;
+        model.setPageListener(pageListener);
+        setModel(model);
+        rolloverIndex = -1;
+        SwingUtilities.invokeLater(this::updateVisibleRange);
+    }
+
+    private void updateVisibleRange() {
+        lazyModel.setVisibleRange(getFirstVisibleIndex(), getLastVisibleIndex());
+    }
+
+    // One screen of rows above and below the visible ones still counts as near
+    private int rowPriority(int index) {
+        if (!isShowing()) {
+            return ImageCache.LoadOwner.FAR;
+        }
+        int first = getFirstVisibleIndex();
+        int last = getLastVisibleIndex();
+        if (first < 0) {
+            // Not laid out yet
+            return ImageCache.LoadOwner.NEAR;
+        }
+        if (index >= first && index <= last) {
+            return ImageCache.LoadOwner.VISIBLE;
+        }
+        int screen = last - first + 1;
+        return index >= first - screen && index <= last + screen ? ImageCache.LoadOwner.NEAR : ImageCache.LoadOwner.FAR;
+    }
+
+    // locationToIndex returns the closest row, even below the last one
+    private int rowAt(Point point) {
+        int index = locationToIndex(point);
+        if (index < 0 || !getCellBounds(index, index).contains(point)) {
+            return -1;
+        }
+        return index;
+    }
+
+    private void setRolloverIndex(int index) {
+        if (index == rolloverIndex) {
+            return;
+        }
+        repaintRow(rolloverIndex);
+        rolloverIndex = index;
+        repaintRow(rolloverIndex);
+    }
+
+    private void repaintRow(int index) {
+        if (index >= 0 && index < getModel().getSize()) {
+            Rectangle bounds = getCellBounds(index, index);
+            if (bounds != null) {
+                repaint(bounds);
+            }
+        }
+    }
+
+    /**
+     * The single component used to paint every row.
+     */
+    private class CardCellRenderer extends JPanel implements ListCellRenderer<Card> {
+        private final JPanel itemPanel = new JPanel(new BorderLayout(10, 0));
+        private final ThumbnailLoader.ThumbnailIcon thumbnailIcon = new ThumbnailLoader.ThumbnailIcon();
+        private final JLabel imageLabel = new JLabel();
+        private final JLabel nameLabel = new JLabel();
+        private final JLabel setLabel = new JLabel();
+        private final JLabel rarityLabel = new JLabel();
+        private final JLabel ownedLabel = new JLabel();
+
+        private CardCellRenderer() {
+            super(new BorderLayout());
+            setBackground(CardGUI.BACKGROUND_COLOR);
+            // Gap between rows
+            setBorder(BorderFactory.createEmptyBorder(0, 0, 5, 0));
+
+            itemPanel.setBorder(BorderFactory.createCompoundBorder(
+                    BorderFactory.createMatteBorder(0, 0, 1, 0, CardGUI.BACKGROUND_COLOR),
+                    BorderFactory.createEmptyBorder(10, 10, 10, 10))
+            );
+
+            imageLabel.setHorizontalAlignment(JLabel.CENTER);
+            imageLabel.setForeground(CardGUI.TEXT_COLOR);
+            imageLabel.setFont(new Font("SansSerif", Font.PLAIN, 10));
+            imageLabel.setPreferredSize(new Dimension(THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT));
+            imageLabel.setOpaque(false);
+
+            JPanel detailsPanel = new JPanel();
+            detailsPanel.setLayout(new BoxLayout(detailsPanel, BoxLayout.Y_AXIS));
+            detailsPanel.setOpaque(false);
+            detailsPanel.setBorder(BorderFactory.createEmptyBorder(5, 0, 5, 0));
+
+            nameLabel.setFont(new Font("SansSerif", Font.BOLD, 14));
+            nameLabel.setForeground(CardGUI.TEXT_COLOR);
+            setLabel.setFont(new Font("SansSerif", Font.PLAIN, 11));
+            setLabel.setForeground(CardGUI.TEXT_COLOR);
+            rarityLabel.setFont(new Font("SansSerif", Font.PLAIN, 11));
+            rarityLabel.setForeground(CardGUI.TEXT_COLOR);
+            ownedLabel.setFont(new Font("SansSerif", Font.BOLD, 11));
+            ownedLabel.setForeground(CardGUI.PRIMARY_COLOR.brighter());
+
+            detailsPanel.add(nameLabel);
+            detailsPanel.add(Box.createRigidArea(new Dimension(0, 4)));
+            detailsPanel.add(setLabel);
+            detailsPanel.add(rarityLabel);
+            detailsPanel.add(ownedLabel);
+
+            itemPanel.add(imageLabel, BorderLayout.WEST);
+            itemPanel.add(detailsPanel, BorderLayout.CENTER);
+            add(itemPanel, BorderLayout.CENTER);
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Card> list, Card card, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            itemPanel.setBackground(index == rolloverIndex ? CardGUI.PANEL_COLOR.brighter() : CardGUI.PANEL_COLOR);
+            if (card == null) {
+                // Its page has not arrived yet
+                nameLabel.setText("Loading...");
+                setLabel.setText(" ");
+                rarityLabel.setText(" ");
+                ownedLabel.setText(" ");
+                imageLabel.setIcon(null);
+                imageLabel.setText("");
+                return this;
+            }
+
+            nameLabel.setText(card.getName());
+            setLabel.setText("Set: " + (card.getSetInfo() != null ? card.getSetInfo().getSetName() : "N/A"));
+            rarityLabel.setText("Rarity: " + (card.getRarity() != null ? card.getRarity() : "N/A"));
+            // A space keeps the row height stable for cards that are not owned
+            ownedLabel.setText(ownershipCheck.test(card) ? "\u2713 Owned" : " ");
+
+            String imageUrl = card.getImageInfo() != null ? card.getImageInfo().getSmall() : null;
+            Image thumbnail = imageUrl != null ? thumbnails.get(imageUrl, index) : null;
+            if (thumbnail != null) {
+                thumbnailIcon.setImage(thumbnail);
+                imageLabel.setIcon(thumbnailIcon);
+                imageLabel.setText(null);
+            } else {
+                imageLabel.setIcon(null);
+                imageLabel.setText(imageUrl == null ? "No Img" : thumbnails.hasFailed(imageUrl) ? "N/A" : "");
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package gui;
+
+import data.PricePoint;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Line chart of a card's price history.
+ * Paints the points it is given as they are, the caller passes a history already downsampled
+ * to about one point per pixel column.
+ */
+class PriceChart extends JComponent {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("d MMM yyyy")
+            .withZone(ZoneId.systemDefault());
+    private static final int PADDING = 8;
+    private static final Color LINE_COLOR = CardGUI.PRIMARY_COLOR.brighter();
+    private static final Color FILL_COLOR = new Color(LINE_COLOR.getRed(), LINE_COLOR.getGreen(), LINE_COLOR.getBlue(), 50);
+    private static final Color GRID_COLOR = new Color(80, 80, 80);
+
+    private List<PricePoint> points = List.of();
+
+    PriceChart() {
+        setPreferredSize(new Dimension(360, 150));
+        setMaximumSize(new Dimension(Integer.MAX_VALUE, 150));
+        setFont(new Font("SansSerif", Font.PLAIN, 11));
+        setForeground(CardGUI.TEXT_COLOR);
+    }
+
+    /**
+     * @param points The points to draw, oldest first
+     */
+    void setPoints(List<PricePoint> points) {
+        this.points = points;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics.create();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setColor(CardGUI.PANEL_COLOR);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            if (points.isEmpty()) {
+                return;
+            }
+            FontMetrics metrics = g.getFontMetrics();
+            long minCents = Long.MAX_VALUE;
+            long maxCents = Long.MIN_VALUE;
+            for (PricePoint point : points) {
+                minCents = Math.min(minCents, point.cents());
+                maxCents = Math.max(maxCents, point.cents());
+            }
+            String maxLabel = String.format("€%,.2f", maxCents / 100.0);
+            String minLabel = String.format("€%,.2f", minCents / 100.0);
+            int left = PADDING + Math.max(metrics.stringWidth(maxLabel), metrics.stringWidth(minLabel)) + PADDING;
+            int top = PADDING + metrics.getAscent() / 2;
+            int right = getWidth() - PADDING;
+            int bottom = getHeight() - PADDING - metrics.getHeight();
+            if (right <= left || bottom <= top) {
+                return;
+            }
+
+            // Price labels at the top and bottom line, dates below the ends of the time axis
+            g.setColor(GRID_COLOR);
+            g.drawLine(left, top, right, top);
+            g.drawLine(left, bottom, right, bottom);
+            g.setColor(getForeground());
+            g.drawString(maxLabel, PADDING, top + metrics.getAscent() / 2);
+            g.drawString(minLabel, PADDING, bottom + metrics.getAscent() / 2);
+            long firstTime = points.get(0).time();
+            long lastTime = points.get(points.size() - 1).time();
+            int labelBaseline = getHeight() - PADDING;
+            g.drawString(DATE_FORMAT.format(Instant.ofEpochSecond(firstTime)), left, labelBaseline);
+            String lastDate = DATE_FORMAT.format(Instant.ofEpochSecond(lastTime));
+            g.drawString(lastDate, right - metrics.stringWidth(lastDate), labelBaseline);
+
+            // A flat history is drawn through the middle
+            long centsRange = Math.max(1, maxCents - minCents);
+            long timeRange = Math.max(1, lastTime - firstTime);
+            Path2D.Double line = new Path2D.Double();
+            double x = left;
+            double y = 0;
+            for (int i = 0; i < points.size(); i++) {
+                PricePoint point = points.get(i);
+                x = points.size() == 1 ? (left + right) / 2.0 : left + (double) (point.time() - firstTime) * (right - left) / timeRange;
+                y = maxCents == minCents ? (top + bottom) / 2.0
+                        : bottom - (double) (point.cents() - minCents) * (bottom - top) / centsRange;
+                if (i == 0) {
+                    line.moveTo(x, y);
+                } else {
+                    line.lineTo(x, y);
+                }
+            }
+            if (points.size() > 1) {
+                Path2D.Double area = new Path2D.Double(line);
+                area.lineTo(x, bottom);
+                area.lineTo(left, bottom);
+                area.closePath();
+                g.setColor(FILL_COLOR);
+                g.fill(area);
+                g.setColor(LINE_COLOR);
+                g.setStroke(new BasicStroke(1.5f));
+                g.draw(line);
+            } else {
+                g.setColor(LINE_COLOR);
+                g.fillOval((int) x - 3, (int) y - 3, 6, 6);
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package gui;
+
+import data.Card;
+import util.CardResultEngine;
+import util.CardResultEngine.Facet;
+import util.CardResultEngine.SortKey;
+import util.LazyListModel;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Sort and filter controls above a list of search results.
+ * Every change is answered in memory by a CardResultEngine and the reordered cards are handed
+ * straight to the virtualized list, so no new search is made. The filter choices show how many
+ * results each value would leave.
+ */
+public class ResultRefinePanel extends JPanel {
+    private static final String ALL = "All";
+
+    private final CardResultEngine engine;
+    private final CardResultsList resultsList;
+    private final JComboBox<SortKey> sortBox = new JComboBox<>(SortKey.values());
+    private final JCheckBox descendingBox = new JCheckBox("Descending");
+    private final Map<Facet, JComboBox<FacetOption>> facetBoxes = new EnumMap<>(Facet.class);
+    private final JLabel countLabel = new JLabel();
+    // Set while the filter choices are rebuilt, so their listeners do not re-run the query
+    private boolean updating;
+
+    /**
+     * Creates the controls for a list of results.
+     * @param engine The engine over the results.
+     * @param resultsList The list showing the results, its model is replaced on every change.
+     */
+    public ResultRefinePanel(CardResultEngine engine, CardResultsList resultsList) {
+        super(new GridLayout(2, 1));
+        this.engine = engine;
+        this.resultsList = resultsList;
+        setBackground(CardGUI.BACKGROUND_COLOR);
+
+        // First row: order and result count
+        JPanel sortRow = createRow();
+        sortRow.add(createLabel("Sort:"));
+        sortBox.addActionListener(e -> apply());
+        sortRow.add(sortBox);
+        descendingBox.setOpaque(false);
+        descendingBox.setForeground(CardGUI.TEXT_COLOR);
+        descendingBox.addActionListener(e -> apply());
+        sortRow.add(descendingBox);
+        countLabel.setForeground(CardGUI.TEXT_COLOR);
+        sortRow.add(countLabel);
+
+        // Second row: one filter per facet
+        JPanel filterRow = createRow();
+        for (Facet facet : Facet.values()) {
+            JComboBox<FacetOption> box = new JComboBox<>();
+            // Keeps long values from widening the row past the window
+            box.setPrototypeDisplayValue(new FacetOption("Rare Holo VMAX", 999));
+            box.addActionListener(e -> {
+                if (!updating) {
+                    apply();
+                }
+            });
+            facetBoxes.put(facet, box);
+            filterRow.add(createLabel(facet + ":"));
+            filterRow.add(box);
+        }
+
+        add(sortRow);
+        add(filterRow);
+        refreshFacets(Map.of());
+        countLabel.setText(engine.size() + " cards");
+    }
+
+    private JPanel createRow() {
+        JPanel row = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 4));
+        row.setOpaque(false);
+        return row;
+    }
+
+    private JLabel createLabel(String text) {
+        JLabel label = new JLabel(text);
+        label.setFont(new Font("SansSerif", Font.BOLD, 12));
+        label.setForeground(CardGUI.TEXT_COLOR);
+        return label;
+    }
+
+    /**
+     * Runs the query for the current choices and shows the result.
+     */
+    private void apply() {
+        Map<Facet, String> filters = selectedFilters();
+        List<Card> cards = engine.query(filters, (SortKey) sortBox.getSelectedItem(), descendingBox.isSelected());
+        resultsList.setLazyModel(LazyListModel.of(cards));
+        refreshFacets(filters);
+        countLabel.setText(cards.size() + " of " + engine.size() + " cards");
+        // Back to the top of the results
+        scrollRectToVisible(new Rectangle(0, 0, 1, 1));
+    }
+
+    private Map<Facet, String> selectedFilters() {
+        Map<Facet, String> filters = new EnumMap<>(Facet.class);
+        facetBoxes.forEach((facet, box) -> {
+            FacetOption option = (FacetOption) box.getSelectedItem();
+            if (option != null && option.value() != null) {
+                filters.put(facet, option.value());
+            }
+        });
+        return filters;
+    }
+
+    /**
+     * Rebuilds the filter choices with the counts for the current filters, keeping the selection.
+     */
+    private void refreshFacets(Map<Facet, String> filters) {
+        updating = true;
+        try {
+            facetBoxes.forEach((facet, box) -> {
+                String selected = filters.get(facet);
+                DefaultComboBoxModel<FacetOption> options = new DefaultComboBoxModel<>();
+                options.addElement(new FacetOption(null, 0));
+                engine.facetCounts(facet, filters).forEach((value, count) -> options.addElement(new FacetOption(value, count)));
+                for (int i = 0; i < options.getSize(); i++) {
+                    if (Objects.equals(options.getElementAt(i).value(), selected)) {
+                        options.setSelectedItem(options.getElementAt(i));
+                    }
+                }
+                box.setModel(options);
+                // Nothing to choose between
+                box.setEnabled(options.getSize() > 2 || selected != null);
+            });
+        } finally {
+            updating = false;
+        }
+    }
+
+    /**
+     * One choice of a filter, a null value meaning no filter.
+     */
+    private record FacetOption(String value, int count) {
+        @Override
+        public String toString() {
+            return value == null ? ALL : value + " (" + count + ")";
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package gui;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Panel used as the view of a scroll pane whose content is swapped between messages and result views.
+ * While it holds a Scrollable view such as the gallery, scrolling steps are taken from that view, so a
+ * wheel notch moves by its rows instead of a fixed number of pixels. Otherwise it sizes and scrolls
+ * like a plain panel would.
+ */
+class ScrollingContentPanel extends JPanel implements Scrollable {
+    // Unit increment when no Scrollable view is shown, the one the other scroll panes set on their scroll bars.
+    // The scroll pane must not set one itself, or it is used instead of this panel's increments.
+    private static final int DEFAULT_UNIT_INCREMENT = 16;
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        Component view = scrollableView();
+        if (view == null) {
+            return DEFAULT_UNIT_INCREMENT;
+        }
+        return ((Scrollable) view).getScrollableUnitIncrement(toView(view, visibleRect), orientation, direction);
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        Component view = scrollableView();
+        if (view == null) {
+            return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+        }
+        return ((Scrollable) view).getScrollableBlockIncrement(toView(view, visibleRect), orientation, direction);
+    }
+
+    // Stretched to the viewport when smaller, as the viewport does for views that are not Scrollable
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() instanceof JViewport viewport && viewport.getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport viewport && viewport.getHeight() > getPreferredSize().height;
+    }
+
+    private Component scrollableView() {
+        for (Component child : getComponents()) {
+            if (child instanceof Scrollable && child.isVisible()) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static Rectangle toView(Component view, Rectangle visibleRect) {
+        Rectangle rect = new Rectangle(visibleRect);
+        rect.translate(-view.getX(), -view.getY());
+        return rect;
+    }
+}
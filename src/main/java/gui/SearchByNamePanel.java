@@ -1,5 +1,7 @@
 package gui;
 
+import util.ImageCache;
+
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
@@ -32,6 +34,7 @@ public class SearchByNamePanel extends JPanel {
         scrollPane.setBorder(BorderFactory.createEmptyBorder());
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
         scrollPane.getViewport().setBackground(CardGUI.BACKGROUND_COLOR);
+        ImageCache.trackViewport(scrollPane); // Load thumbnails of visible rows first
 
         add(scrollPane, BorderLayout.CENTER);
     }
@@ -1,5 +1,7 @@
 package gui;
 
+import util.ImageCache;
+
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
@@ -49,6 +51,7 @@ public class SearchBySetPanel extends JPanel {
         scrollPane.setBorder(BorderFactory.createEmptyBorder()); // No border for the scroll pane itself
         scrollPane.getVerticalScrollBar().setUnitIncrement(16); // Improve scroll speed
         scrollPane.getViewport().setBackground(CardGUI.BACKGROUND_COLOR); // Ensure viewport matches theme
+        ImageCache.trackViewport(scrollPane); // Load thumbnails of visible rows first
 
         add(scrollPane, BorderLayout.CENTER);
     }
@@ -0,0 +1,187 @@
+package gui;
+
+import data.Card;
+import util.ImageCache;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Thumbnail lookups for a virtualized card view that paints through a shared renderer.
+ * Each thumbnail is requested from ImageCache once and the view is repainted when it arrives.
+ * Each request is owned by the row it is for, so the download is prioritized by how close
+ * that row is to the visible ones rather than by where the whole view is.
+ * Recently painted thumbnails are kept on heap, so repaints while scrolling do not inflate
+ * them from the off-heap store again. Only used on the EDT.
+ */
+class ThumbnailLoader {
+    private final JComponent view;
+    private final int thumbnailWidth;
+    private final IntUnaryOperator rowPriority;
+
+    private final Map<String, Image> paintedThumbnails;
+    // Thumbnails requested from ImageCache and not loaded yet, by URL
+    private final Map<String, RowRequest> requests = new HashMap<>();
+    private final Set<String> failedThumbnails = new HashSet<>();
+
+    /**
+     * Creates a new ThumbnailLoader.
+     * @param view The view the thumbnails are painted in, repainted whenever one arrives.
+     * @param thumbnailWidth The width the thumbnails are loaded at.
+     * @param retained How many recently painted thumbnails to keep on heap.
+     * @param rowPriority Maps a row index to its ImageCache.LoadOwner priority, called on the EDT.
+     */
+    ThumbnailLoader(JComponent view, int thumbnailWidth, int retained, IntUnaryOperator rowPriority) {
+        this.view = view;
+        this.thumbnailWidth = thumbnailWidth;
+        this.rowPriority = rowPriority;
+        this.paintedThumbnails = new LinkedHashMap<>(retained, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+                return size() > retained;
+            }
+        };
+    }
+
+    /**
+     * Looks a thumbnail up, requesting it once if it is not cached.
+     * @param imageUrl The small image URL of the card.
+     * @param index The row the thumbnail is shown in.
+     * @return The thumbnail, or null while it is loading or if it failed.
+     */
+    Image get(String imageUrl, int index) {
+        Image thumbnail = paintedThumbnails.get(imageUrl);
+        if (thumbnail != null) {
+            return thumbnail;
+        }
+        thumbnail = ImageCache.getCachedImage(imageUrl, thumbnailWidth, -1);
+        if (thumbnail != null) {
+            paintedThumbnails.put(imageUrl, thumbnail);
+            return thumbnail;
+        }
+        if (failedThumbnails.contains(imageUrl)) {
+            return null;
+        }
+        RowRequest request = requests.get(imageUrl);
+        if (request != null) {
+            // Follow the row, the same card may have moved since it was requested
+            request.index = index;
+            return null;
+        }
+        RowRequest issued = new RowRequest(imageUrl, index);
+        requests.put(imageUrl, issued);
+        ImageCache.loadImageAsync(imageUrl, thumbnailWidth, -1, issued, image -> {
+            requests.remove(imageUrl, issued);
+            if (ImageCache.isErrorImage(image)) {
+                failedThumbnails.add(imageUrl);
+            } else {
+                paintedThumbnails.put(imageUrl, image);
+            }
+            view.repaint();
+        });
+        return null;
+    }
+
+    /**
+     * Starts loading a card's thumbnail ahead of it being painted, if its row is near the visible ones.
+     * @param card The card, may be null for rows that have not loaded yet.
+     * @param index The row of the card.
+     */
+    void prefetch(Card card, int index) {
+        if (card != null && card.getImageInfo() != null && card.getImageInfo().getSmall() != null) {
+            int priority = rowPriority.applyAsInt(index);
+            if (priority != ImageCache.LoadOwner.FAR && priority != ImageCache.LoadOwner.DISCARDED) {
+                get(card.getImageInfo().getSmall(), index);
+            }
+        }
+    }
+
+    /**
+     * Gives up the pending thumbnails of cards that are no longer resident, cancelling their
+     * downloads unless they have started or another view wants them.
+     * @param cards The cards, e.g. of an evicted page.
+     */
+    void discard(List<Card> cards) {
+        boolean discarded = false;
+        for (Card card : cards) {
+            RowRequest request = card != null && card.getImageInfo() != null
+                    ? requests.remove(card.getImageInfo().getSmall()) : null;
+            if (request != null) {
+                request.discarded = true;
+                discarded = true;
+            }
+        }
+        if (discarded) {
+            ImageCache.refreshLoadPriorities();
+        }
+    }
+
+    /**
+     * @param imageUrl The small image URL of the card.
+     * @return true if loading that thumbnail failed.
+     */
+    boolean hasFailed(String imageUrl) {
+        return failedThumbnails.contains(imageUrl);
+    }
+
+    /**
+     * A pending thumbnail, asked for its priority whenever the load order is refreshed.
+     */
+    private final class RowRequest implements ImageCache.LoadOwner {
+        private final String imageUrl;
+        private int index;
+        private boolean discarded;
+
+        private RowRequest(String imageUrl, int index) {
+            this.imageUrl = imageUrl;
+            this.index = index;
+        }
+
+        @Override
+        public int loadPriority() {
+            if (discarded) {
+                return DISCARDED;
+            }
+            int priority = rowPriority.applyAsInt(index);
+            if (priority == DISCARDED) {
+                // Requested again if the row comes back
+                discarded = true;
+                requests.remove(imageUrl, this);
+            }
+            return priority;
+        }
+    }
+
+    /**
+     * Icon that paints whatever thumbnail a renderer last assigned, avoiding an ImageIcon per cell.
+     */
+    static class ThumbnailIcon implements Icon {
+        private Image image;
+
+        void setImage(Image image) {
+            this.image = image;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            g.drawImage(image, x, y, null);
+        }
+
+        @Override
+        public int getIconWidth() {
+            return image.getWidth(null);
+        }
+
+        @Override
+        public int getIconHeight() {
+            return image.getHeight(null);
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package gui;
 
+import database.CollectionValuation;
+import util.ImageCache;
+
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * JPanel for displaying the user's saved Pokémon card collection from the database.
@@ -10,6 +14,18 @@ import java.awt.*;
 public class ViewCollectionPanel extends JPanel {
     private final CardController controller;
     private JPanel collectionPanel; // Panel to display the collection items
+    private JToggleButton galleryToggle; // Switches between the list and the thumbnail gallery
+    private JTextField searchField; // Filters the collection as the user types
+    private Timer searchTimer; // Runs the search once typing pauses
+    private String shownQuery = ""; // The query the collection panel currently shows the results of
+    private JLabel valueLabel; // Live value of the collection
+    private final AtomicBoolean valueUpdatePending = new AtomicBoolean(); // Coalesces value changes into one repaint
+
+    private static final String SEARCH_PLACEHOLDER = "Search your collection (name, set, series, type, rarity)";
+    // Sets listed in the value tooltip
+    private static final int TOOLTIP_SETS = 10;
+    // Keystrokes closer together than this are searched once
+    private static final int SEARCH_DELAY_MS = 150;
 
     /**
      * Constructor for ViewCollectionPanel.
@@ -30,12 +46,16 @@ public class ViewCollectionPanel extends JPanel {
         // Add padding around the panel
         setBorder(new EmptyBorder(20, 20, 20, 20));
 
-        // Create the top panel with Back button and Title
-        JPanel topPanel = createTopPanel();
-        add(topPanel, BorderLayout.NORTH);
+        // Create the top panel with Back button and Title, and the search box below it
+        JPanel northPanel = new JPanel(new BorderLayout(0, 10));
+        northPanel.setBackground(CardGUI.BACKGROUND_COLOR);
+        northPanel.add(createTopPanel(), BorderLayout.NORTH);
+        northPanel.add(createSearchField(), BorderLayout.CENTER);
+        northPanel.add(createValueLabel(), BorderLayout.SOUTH);
+        add(northPanel, BorderLayout.NORTH);
 
-        // Create the main content panel for the collection list
-        collectionPanel = new JPanel();
+        // Create the main content panel for the collection list, it scrolls by the gallery's rows in gallery mode
+        collectionPanel = new ScrollingContentPanel();
         collectionPanel.setLayout(new BoxLayout(collectionPanel, BoxLayout.Y_AXIS));
         collectionPanel.setBackground(CardGUI.BACKGROUND_COLOR);
 
@@ -46,17 +66,24 @@ public class ViewCollectionPanel extends JPanel {
         JScrollPane scrollPane = new JScrollPane(collectionPanel);
         scrollPane.setBackground(CardGUI.BACKGROUND_COLOR);
         scrollPane.setBorder(BorderFactory.createEmptyBorder());
-        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        // No fixed unit increment, it would override the scrolling steps of the collection panel
         scrollPane.getViewport().setBackground(CardGUI.BACKGROUND_COLOR);
+        ImageCache.trackViewport(scrollPane); // Load thumbnails of visible rows first
 
         add(scrollPane, BorderLayout.CENTER);
 
-        // Add a component listener to trigger loading when the panel becomes visible
+        // Add a component listener to trigger loading when the panel becomes visible, and unloading when it is left
         addComponentListener(new java.awt.event.ComponentAdapter() {
             @Override
             public void componentShown(java.awt.event.ComponentEvent evt) {
-                // Tell the controller to load the collection data into the panel
-                controller.loadCollectionView(collectionPanel);
+                // Tell the controller to load the collection data into the panel, filtered by the search box
+                refreshCollection();
+            }
+
+            @Override
+            public void componentHidden(java.awt.event.ComponentEvent evt) {
+                // Stop reading the collection and let its pages go
+                controller.unloadCollectionView(collectionPanel);
             }
         });
     }
@@ -79,13 +106,149 @@ public class ViewCollectionPanel extends JPanel {
         JLabel titleLabel = UIUtils.createSectionHeader("My Collection"); // Use section header style
         titleLabel.setHorizontalAlignment(JLabel.CENTER); // Center the title
 
+        // Gallery toggle, reloads the collection in the chosen view
+        galleryToggle = new JToggleButton("Gallery");
+        galleryToggle.setFocusPainted(false);
+        galleryToggle.addActionListener(e -> refreshCollection());
+
+        // Import button, adds the cards of an export or an id list to the collection
+        JButton importButton = UIUtils.createStandardButton("Import...");
+        importButton.setEnabled(false);
+        importButton.setToolTipText("Available once the collection database has started");
+        controller.whenCollectionReady(available -> {
+            importButton.setEnabled(available);
+            importButton.setToolTipText(available ? "Add cards from an export or a file of card IDs" : "Collection is unavailable");
+        });
+        importButton.addActionListener(e -> controller.importCollection(collectionPanel, galleryToggle.isSelected()));
+
+        // Export button, writes the collection to a CSV or JSON Lines file
+        JButton exportButton = UIUtils.createStandardButton("Export...");
+        exportButton.setEnabled(false);
+        exportButton.setToolTipText("Available once the collection database has started");
+        controller.whenCollectionReady(available -> {
+            exportButton.setEnabled(available);
+            exportButton.setToolTipText(available ? "Save the collection as CSV or JSON Lines" : "Collection is unavailable");
+        });
+        exportButton.addActionListener(e -> controller.exportCollection(collectionPanel));
+
+        JPanel actionsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        actionsPanel.setBackground(CardGUI.BACKGROUND_COLOR);
+        actionsPanel.add(importButton);
+        actionsPanel.add(exportButton);
+        actionsPanel.add(galleryToggle);
+
         // Add components to the top panel
         topPanel.add(backButton, BorderLayout.WEST);
         topPanel.add(titleLabel, BorderLayout.CENTER);
+        topPanel.add(actionsPanel, BorderLayout.EAST);
 
         return topPanel;
     }
 
+    /**
+     * Creates the search box, which searches the collection as the user types.
+     * @return The configured search field.
+     */
+    private JTextField createSearchField() {
+        searchField = UIUtils.createSearchField(SEARCH_PLACEHOLDER, query -> refreshCollection());
+        searchTimer = new Timer(SEARCH_DELAY_MS, e -> {
+            // The placeholder coming and going with the focus does not change the query
+            if (!currentQuery().equals(shownQuery)) {
+                refreshCollection();
+            }
+        });
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                // Attribute changes only
+            }
+        });
+        return searchField;
+    }
+
+    /**
+     * Creates the label showing the value of the collection, kept up to date by the CollectionValuation.
+     * Its tooltip breaks the value down by rarity and set; the popup menu recomputes it.
+     * @return The configured label.
+     */
+    private JLabel createValueLabel() {
+        valueLabel = new JLabel("Collection value: calculating...");
+        valueLabel.setFont(new Font("SansSerif", Font.BOLD, 14));
+        valueLabel.setForeground(CardGUI.TEXT_COLOR);
+        JPopupMenu menu = new JPopupMenu();
+        JMenuItem recompute = new JMenuItem("Recalculate value");
+        recompute.addActionListener(e -> controller.recomputeCollectionValue());
+        menu.add(recompute);
+        valueLabel.setComponentPopupMenu(menu);
+        controller.whenCollectionReady(available -> {
+            CollectionValuation valuation = controller.getCollectionValuation();
+            if (!available || valuation == null) {
+                valueLabel.setText("Collection value: unavailable");
+                return;
+            }
+            valuation.addChangeListener(() -> {
+                // Changes come from any thread, often many at once during an import
+                if (valueUpdatePending.compareAndSet(false, true)) {
+                    SwingUtilities.invokeLater(() -> {
+                        valueUpdatePending.set(false);
+                        updateValueLabel(valuation);
+                    });
+                }
+            });
+            updateValueLabel(valuation);
+        });
+        return valueLabel;
+    }
+
+    private void updateValueLabel(CollectionValuation valuation) {
+        CollectionValuation.Totals total = valuation.total();
+        valueLabel.setText(String.format("Collection value: €%,.2f  ·  %,d cards, %,d with a price",
+                total.value(), total.cards(), total.pricedCards()));
+
+        StringBuilder tooltip = new StringBuilder("<html><b>By rarity</b><br>");
+        valuation.byRarity().forEach((rarity, totals) -> appendTotals(tooltip, rarity, totals));
+        tooltip.append("<br><b>Most valuable sets</b><br>");
+        valuation.bySet().entrySet().stream().limit(TOOLTIP_SETS)
+                .forEach(entry -> appendTotals(tooltip, entry.getKey(), entry.getValue()));
+        valueLabel.setToolTipText(tooltip.append("</html>").toString());
+    }
+
+    private static void appendTotals(StringBuilder tooltip, String group, CollectionValuation.Totals totals) {
+        tooltip.append(String.format("%s: €%,.2f (%,d cards)<br>", escapeHtml(group), totals.value(), totals.cards()));
+    }
+
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * Shows the whole collection, or the cards matching the search box, in the chosen view.
+     */
+    private void refreshCollection() {
+        searchTimer.stop();
+        if (!isShowing()) {
+            return; // Loaded when the panel is shown
+        }
+        shownQuery = currentQuery();
+        controller.searchCollection(shownQuery, collectionPanel, galleryToggle.isSelected());
+    }
+
+    private String currentQuery() {
+        String text = searchField.getText();
+        return text.equals(SEARCH_PLACEHOLDER) ? "" : text.strip();
+    }
+
     /**
      * Allows external components (like the controller) to get the collection panel
      * for updating its content (e.g., showing loading state, results, or errors).
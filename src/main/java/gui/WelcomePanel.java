@@ -74,6 +74,15 @@ public class WelcomePanel extends JPanel {
         JButton viewCollectionButton = UIUtils.createStandardButton("View My Collection");
         configureNavButton(viewCollectionButton, buttonSize, "viewCollection");
         add(viewCollectionButton);
+        // The database starts in the background, the collection is available once it is ready
+        if (!controller.isCollectionAvailable()) {
+            viewCollectionButton.setEnabled(false);
+            viewCollectionButton.setToolTipText("Opening your collection...");
+        }
+        controller.whenCollectionReady(available -> {
+            viewCollectionButton.setEnabled(available);
+            viewCollectionButton.setToolTipText(available ? null : "The collection database could not be opened.");
+        });
 
         // Add flexible space at the bottom
         add(Box.createVerticalGlue());
@@ -1,48 +1,32 @@
 package main;
 
+import api.HttpTransport;
 import config.AppConfig;
 import database.CardRepository;
+import database.CollectionServices;
+import database.CollectionWriter;
+import database.PriceHistoryStore;
 import gui.CardGUI;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import util.EdtWatchdog;
 
 import javax.swing.*;
+import java.util.concurrent.CompletableFuture;
 
 public class Main {
     public static void main(String[] args) {
         try {
             System.out.println("Starting application...");
-            AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+            // Opt-in, see edt.watchdog.enabled
+            EdtWatchdog.installIfEnabled();
 
-            // Register the configuration class
-            context.register(AppConfig.class);
+            // Completed by the database stage, the GUI does not wait for it
+            CompletableFuture<CollectionServices> collectionServices = new CompletableFuture<>();
 
-            // Refresh context with detailed error handling
-            try {
-                context.refresh();
-                System.out.println("Spring context initialized successfully");
-            } catch (Exception e) {
-                System.err.println("Failed to initialize Spring context: " + e.getMessage());
-                e.printStackTrace();
-                System.exit(1);
-            }
-
-            // Get repository bean with error handling
-            CardRepository cardRepository;
-            try {
-                cardRepository = context.getBean(CardRepository.class);
-                System.out.println("CardRepository bean retrieved successfully");
-            } catch (Exception e) {
-                System.err.println("Failed to get CardRepository bean: " + e.getMessage());
-                e.printStackTrace();
-                context.close();
-                System.exit(1);
-                return;
-            }
-
-            // Start the GUI with SwingUtilities
+            // Stage 1: show the window straight away, searches work without the database
             SwingUtilities.invokeLater(() -> {
                 try {
-                    CardGUI gui = new CardGUI(cardRepository);
+                    CardGUI gui = new CardGUI(collectionServices);
                     gui.setVisible(true);
                     System.out.println("GUI initialized successfully");
                 } catch (Exception e) {
@@ -51,7 +35,17 @@ public class Main {
                 }
             });
 
-            // Add a shutdown hook to close the context
+            // Stage 2, in parallel: Spring, Hibernate and the H2 database
+            AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+            Thread databaseStartup = new Thread(() -> startDatabase(context, collectionServices), "database-startup");
+            databaseStartup.start();
+
+            // Stage 3, in parallel: set up the HTTP connection pool before the first search needs it
+            Thread httpStartup = new Thread(HttpTransport::warmUp, "http-startup");
+            httpStartup.setDaemon(true);
+            httpStartup.start();
+
+            // Add a shutdown hook to close the context, which also writes pending collection changes
             Runtime.getRuntime().addShutdownHook(new Thread(context::close));
 
         } catch (Exception e) {
@@ -60,4 +54,26 @@ public class Main {
             System.exit(1);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Starts the Spring context and hands the collection services to the GUI.
+     * If it fails, the GUI keeps working with the collection features disabled.
+     */
+    private static void startDatabase(AnnotationConfigApplicationContext context,
+                                      CompletableFuture<CollectionServices> collectionServices) {
+        try {
+            // Register the configuration class
+            context.register(AppConfig.class);
+            context.refresh();
+            System.out.println("Spring context initialized successfully");
+
+            collectionServices.complete(new CollectionServices(context.getBean(CardRepository.class),
+                    context.getBean(CollectionWriter.class), context.getBean(PriceHistoryStore.class)));
+            System.out.println("CardRepository bean retrieved successfully");
+        } catch (Exception e) {
+            System.err.println("Failed to initialize Spring context: " + e.getMessage());
+            e.printStackTrace();
+            collectionServices.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package util;
+
+import data.Card;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Sorts, filters and counts facets over a list of cards that is already in memory, such as search results.
+ * Sort keys are computed once per card when the engine is built, and each sort order is computed once
+ * on first use; facet values are kept as bit sets of the cards that carry them. A query then only
+ * intersects bit sets and walks a precomputed order, so re-sorting thousands of cards takes a few milliseconds.
+ */
+public class CardResultEngine {
+    // Rarities from most common to rarest, anything else sorts after them by name
+    private static final List<String> RARITY_ORDER = List.of(
+            "Common", "Uncommon", "Rare", "Rare Holo", "Promo", "Rare Holo EX", "Rare Holo GX", "Rare Holo V",
+            "Rare Holo VMAX", "Rare Holo VSTAR", "Rare Prime", "Rare ACE", "Rare BREAK", "Rare Prism Star",
+            "Double Rare", "Rare Ultra", "Ultra Rare", "Illustration Rare", "Rare Shining", "Rare Shiny",
+            "Rare Shiny GX", "Radiant Rare", "Amazing Rare", "Rare Holo LV.X", "Rare Holo Star", "LEGEND",
+            "Rare Rainbow", "Rare Secret", "Special Illustration Rare", "Hyper Rare");
+
+    private final List<Card> cards;
+    // Sort keys, indexed like cards
+    private final String[] nameKeys;
+    private final String[] numberPrefixes;
+    private final int[] numberKeys;
+    private final int[] rarityRanks;
+    private final long[] priceCents;
+    private final Map<Facet, Map<String, BitSet>> facetIndex = new EnumMap<>(Facet.class);
+    private final Map<SortKey, int[]> sortedOrders = new EnumMap<>(SortKey.class);
+
+    /**
+     * Ways to order the cards.
+     */
+    public enum SortKey {
+        DEFAULT("Default"),
+        NAME("Name"),
+        NUMBER("Number"),
+        RARITY("Rarity"),
+        PRICE("Price");
+
+        private final String label;
+
+        SortKey(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Card attributes the results can be filtered by.
+     */
+    public enum Facet {
+        TYPE("Type", Card::getTypes),
+        SUBTYPE("Subtype", Card::getSubtypes),
+        RARITY("Rarity", card -> card.getRarity() != null ? List.of(card.getRarity()) : List.of()),
+        SUPERTYPE("Supertype", card -> card.getSupertype() != null ? List.of(card.getSupertype()) : List.of());
+
+        private final String label;
+        private final Function<Card, Collection<String>> values;
+
+        Facet(String label, Function<Card, Collection<String>> values) {
+            this.label = label;
+            this.values = values;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Builds the engine, computing the sort keys and facet index of every card.
+     *
+     * @param cards The cards, in the order the source returned them
+     */
+    public CardResultEngine(List<Card> cards) {
+        this.cards = List.copyOf(cards);
+        int size = this.cards.size();
+        nameKeys = new String[size];
+        numberPrefixes = new String[size];
+        numberKeys = new int[size];
+        rarityRanks = new int[size];
+        priceCents = new long[size];
+
+        for (int i = 0; i < size; i++) {
+            Card card = this.cards.get(i);
+            nameKeys[i] = card.getName() != null ? card.getName().toLowerCase(Locale.ROOT) : "";
+            parseNumber(i, card.getNumber());
+            int rank = card.getRarity() != null ? RARITY_ORDER.indexOf(card.getRarity()) : -1;
+            rarityRanks[i] = rank >= 0 ? rank : RARITY_ORDER.size();
+            priceCents[i] = priceInCents(card);
+
+            for (Facet facet : Facet.values()) {
+                Collection<String> values = facet.values.apply(card);
+                if (values == null) {
+                    continue;
+                }
+                Map<String, BitSet> postings = facetIndex.computeIfAbsent(facet, f -> new TreeMap<>());
+                for (String value : values) {
+                    postings.computeIfAbsent(value, v -> new BitSet(size)).set(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of cards, before any filter
+     */
+    public int size() {
+        return cards.size();
+    }
+
+    /**
+     * Filters and sorts the cards.
+     *
+     * @param filters The selected value per facet; facets that are not in the map are not filtered
+     * @param sortKey The order to return the cards in
+     * @param descending true to reverse the order
+     * @return The matching cards in order
+     */
+    public List<Card> query(Map<Facet, String> filters, SortKey sortKey, boolean descending) {
+        BitSet matches = matching(filters);
+        int[] order = sortedOrder(sortKey);
+        List<Card> result = new ArrayList<>(matches.cardinality());
+        for (int i = 0; i < order.length; i++) {
+            int index = order[descending ? order.length - 1 - i : i];
+            if (matches.get(index)) {
+                result.add(cards.get(index));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the cards carrying each value of a facet, among the cards matching the filters
+     * on the other facets, so each value's count is what selecting it would show.
+     *
+     * @param facet The facet to count
+     * @param filters The selected value per facet
+     * @return The count per value, sorted by value; values with no matching cards are left out
+     */
+    public Map<String, Integer> facetCounts(Facet facet, Map<Facet, String> filters) {
+        Map<Facet, String> otherFilters = new EnumMap<>(Facet.class);
+        otherFilters.putAll(filters);
+        otherFilters.remove(facet);
+        BitSet matches = matching(otherFilters);
+
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Map.Entry<String, BitSet> posting : facetIndex.getOrDefault(facet, Map.of()).entrySet()) {
+            BitSet carrying = (BitSet) posting.getValue().clone();
+            carrying.and(matches);
+            int count = carrying.cardinality();
+            if (count > 0) {
+                counts.put(posting.getKey(), count);
+            }
+        }
+        return counts;
+    }
+
+    private BitSet matching(Map<Facet, String> filters) {
+        BitSet matches = new BitSet(cards.size());
+        matches.set(0, cards.size());
+        for (Map.Entry<Facet, String> filter : filters.entrySet()) {
+            BitSet carrying = facetIndex.getOrDefault(filter.getKey(), Map.of()).get(filter.getValue());
+            if (carrying == null) {
+                matches.clear();
+                break;
+            }
+            matches.and(carrying);
+        }
+        return matches;
+    }
+
+    private int[] sortedOrder(SortKey sortKey) {
+        return sortedOrders.computeIfAbsent(sortKey, key -> {
+            Integer[] order = new Integer[cards.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            if (key != SortKey.DEFAULT) {
+                // Arrays.sort is stable, so ties keep the order the source returned them in
+                Arrays.sort(order, comparator(key));
+            }
+            return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+        });
+    }
+
+    private Comparator<Integer> comparator(SortKey sortKey) {
+        Comparator<Integer> byNumber = Comparator.<Integer, String>comparing(i -> numberPrefixes[i])
+                .thenComparingInt(i -> numberKeys[i]);
+        return switch (sortKey) {
+            case NAME -> Comparator.<Integer, String>comparing(i -> nameKeys[i]).thenComparing(byNumber);
+            case NUMBER -> byNumber;
+            case RARITY -> Comparator.<Integer>comparingInt(i -> rarityRanks[i])
+                    .thenComparing(i -> cards.get(i).getRarity() != null ? cards.get(i).getRarity() : "")
+                    .thenComparing(byNumber);
+            // Cards without a price have -1 and come first, i.e. below the cheapest
+            case PRICE -> Comparator.<Integer>comparingLong(i -> priceCents[i]).thenComparing(byNumber);
+            case DEFAULT -> Comparator.naturalOrder();
+        };
+    }
+
+    /**
+     * Splits a collector number like "TG12" or "123a" into its non-numeric prefix and the number,
+     * so "2" sorts before "10".
+     */
+    private void parseNumber(int index, String number) {
+        if (number == null) {
+            numberPrefixes[index] = "";
+            numberKeys[index] = Integer.MAX_VALUE;
+            return;
+        }
+        int start = 0;
+        while (start < number.length() && !Character.isDigit(number.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < number.length() && Character.isDigit(number.charAt(end)) && end - start < 9) {
+            end++;
+        }
+        numberPrefixes[index] = number.substring(0, start).toUpperCase(Locale.ROOT);
+        numberKeys[index] = end > start ? Integer.parseInt(number.substring(start, end)) : Integer.MAX_VALUE;
+    }
+
+    private static long priceInCents(Card card) {
+        if (card.getCardMarket() == null || card.getCardMarket().getPriceInfo() == null) {
+            return -1;
+        }
+        BigDecimal price = card.getCardMarket().getPriceInfo().getAverageSellPrice();
+        return price != null ? price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact() : -1;
+    }
+}
@@ -0,0 +1,255 @@
+package util;
+
+import config.AppProperties;
+import lombok.extern.java.Log;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.InvocationEvent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Opt-in instrumentation of the Event Dispatch Thread, enabled with edt.watchdog.enabled=true.
+ * Every dispatched event is timed and counted in a histogram of EDT task durations. A probe posted
+ * to the event queue at a fixed interval measures how long events wait before they are dispatched.
+ * While an event runs past the stall threshold, the EDT's stack is sampled so the report shows
+ * what it was doing. The report is logged on shutdown and can be dumped at any time with {@link #report()}.
+ */
+@Log
+public class EdtWatchdog {
+    // Histogram buckets: under 1 ms, under 2 ms, under 4 ms, ... and a last bucket for everything longer
+    private static final int BUCKETS = 12;
+    // How many of the most recent stalls the report keeps, and how many stack samples per stall
+    private static final int MAX_STALLS = 20;
+    private static final int MAX_SAMPLES_PER_STALL = 10;
+
+    private static final AtomicLongArray durationHistogram = new AtomicLongArray(BUCKETS);
+    private static final AtomicLongArray latencyHistogram = new AtomicLongArray(BUCKETS);
+    private static final AtomicLong maxDurationNanos = new AtomicLong();
+    private static final AtomicLong maxLatencyNanos = new AtomicLong();
+    private static final Deque<Stall> stalls = new ArrayDeque<>(); // guarded by itself
+
+    // The event being dispatched, written by the EDT and read by the sampler
+    private static volatile Thread dispatchThread;
+    private static volatile long dispatchStartNanos;
+    private static volatile AWTEvent dispatchedEvent;
+    private static volatile boolean installed;
+
+    /**
+     * Installs the watchdog if edt.watchdog.enabled is set. Does nothing otherwise, or if already installed.
+     */
+    public static synchronized void installIfEnabled() {
+        if (installed || !AppProperties.getBoolean("edt.watchdog.enabled", false)) {
+            return;
+        }
+        long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(AppProperties.getLong("edt.watchdog.stallThresholdMillis", 100));
+        long sampleIntervalMillis = AppProperties.getLong("edt.watchdog.sampleIntervalMillis", 20);
+        long probeIntervalMillis = AppProperties.getLong("edt.watchdog.probeIntervalMillis", 100);
+
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new TimedEventQueue());
+        Thread sampler = new Thread(() -> sample(thresholdNanos, sampleIntervalMillis, probeIntervalMillis), "edt-watchdog");
+        sampler.setDaemon(true);
+        sampler.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> log.info(report())));
+        installed = true;
+        log.info("EDT watchdog installed, stall threshold " + TimeUnit.NANOSECONDS.toMillis(thresholdNanos) + " ms");
+    }
+
+    /**
+     * @return true if the watchdog has been installed
+     */
+    public static boolean isInstalled() {
+        return installed;
+    }
+
+    /**
+     * Builds a report of the task duration and dispatch latency histograms and the recent stalls.
+     *
+     * @return The report as multi-line text
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder("EDT watchdog report\n");
+        appendHistogram(report, "Task duration", durationHistogram, maxDurationNanos.get());
+        appendHistogram(report, "Dispatch latency", latencyHistogram, maxLatencyNanos.get());
+        synchronized (stalls) {
+            report.append("Recent stalls: ").append(stalls.size()).append('\n');
+            for (Stall stall : stalls) {
+                report.append("  ").append(stall.durationMillis).append(" ms in ").append(stall.event).append('\n');
+                for (StackTraceElement[] sample : stall.samples) {
+                    report.append("    sample:\n");
+                    for (StackTraceElement frame : sample) {
+                        report.append("      at ").append(frame).append('\n');
+                    }
+                }
+            }
+        }
+        return report.toString();
+    }
+
+    private static void appendHistogram(StringBuilder report, String title, AtomicLongArray histogram, long maxNanos) {
+        report.append(title).append(" (max ").append(TimeUnit.NANOSECONDS.toMillis(maxNanos)).append(" ms):\n");
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            long count = histogram.get(bucket);
+            if (count == 0) {
+                continue;
+            }
+            String range = bucket == BUCKETS - 1
+                    ? ">= " + (1L << (bucket - 1)) + " ms"
+                    : "< " + (1L << bucket) + " ms";
+            report.append(String.format("  %-10s %d%n", range, count));
+        }
+    }
+
+    private static void record(AtomicLongArray histogram, AtomicLong max, long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        // Bucket n holds durations below 2^n ms
+        int bucket = millis == 0 ? 0 : 64 - Long.numberOfLeadingZeros(millis);
+        histogram.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Runs on the watchdog thread: posts latency probes and samples the EDT's stack while an event stalls.
+     */
+    private static void sample(long thresholdNanos, long sampleIntervalMillis, long probeIntervalMillis) {
+        long nextProbe = 0;
+        Stall stall = null;
+        while (true) {
+            try {
+                Thread.sleep(sampleIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (now - nextProbe >= 0) {
+                long posted = now;
+                SwingUtilities.invokeLater(() -> record(latencyHistogram, maxLatencyNanos, System.nanoTime() - posted));
+                nextProbe = now + TimeUnit.MILLISECONDS.toNanos(probeIntervalMillis);
+            }
+
+            long start = dispatchStartNanos;
+            AWTEvent event = dispatchedEvent;
+            if (event == null || now - start < thresholdNanos) {
+                stall = null;
+                continue;
+            }
+            if (stall == null || stall.startNanos != start) {
+                stall = new Stall(start, describe(event));
+                synchronized (stalls) {
+                    if (stalls.size() == MAX_STALLS) {
+                        stalls.removeFirst();
+                    }
+                    stalls.addLast(stall);
+                }
+                log.warning("EDT stalled for over " + TimeUnit.NANOSECONDS.toMillis(thresholdNanos) + " ms in " + stall.event);
+            }
+            Thread edt = dispatchThread;
+            StackTraceElement[] sample = edt != null && stall.samples.size() < MAX_SAMPLES_PER_STALL
+                    ? edt.getStackTrace() : null;
+            synchronized (stalls) {
+                if (sample != null) {
+                    stall.samples.add(sample);
+                }
+                // Kept growing after the last sample, so the report shows how long the stall really lasted
+                stall.durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static String describe(AWTEvent event) {
+        // The runnable behind invokeLater is not exposed, its event's string names it
+        if (event instanceof InvocationEvent) {
+            return event.toString();
+        }
+        return event.getClass().getSimpleName() + " " + event.paramString() + " on " + event.getSource().getClass().getName();
+    }
+
+    /**
+     * Times each event it dispatches. Nested dispatches (e.g. inside a modal dialog) are timed on their own.
+     * While a nested loop waits for its next event the EDT counts as idle: the outer event is paused, and
+     * neither its recorded duration nor stall detection includes the time until it resumes.
+     */
+    private static class TimedEventQueue extends EventQueue {
+        // The innermost event being dispatched, null between top-level events (EDT only)
+        private Dispatch current;
+
+        @Override
+        public AWTEvent getNextEvent() throws InterruptedException {
+            // Called by the EDT's pump, and from inside an event only by the loop of a modal dialog
+            if (current != null) {
+                current.pause();
+            }
+            return super.getNextEvent();
+        }
+
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            Dispatch outer = current;
+            if (outer != null) {
+                outer.pause();
+            }
+            Dispatch dispatch = new Dispatch(event);
+            current = dispatch;
+            dispatchThread = Thread.currentThread();
+            dispatch.resume();
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                dispatch.pause();
+                record(durationHistogram, maxDurationNanos, dispatch.busyNanos);
+                current = outer;
+                if (outer != null) {
+                    // Paused again as soon as a nested loop asks for its next event
+                    outer.resume();
+                }
+            }
+        }
+    }
+
+    /**
+     * An event being dispatched, running from its last resume until it is paused.
+     */
+    private static final class Dispatch {
+        private final AWTEvent event;
+        private long resumedNanos;
+        private long busyNanos;
+        private boolean running;
+
+        private Dispatch(AWTEvent event) {
+            this.event = event;
+        }
+
+        private void resume() {
+            resumedNanos = System.nanoTime();
+            running = true;
+            dispatchStartNanos = resumedNanos;
+            dispatchedEvent = event;
+        }
+
+        private void pause() {
+            if (running) {
+                busyNanos += System.nanoTime() - resumedNanos;
+                running = false;
+                dispatchedEvent = null;
+            }
+        }
+    }
+
+    private static final class Stall {
+        private final long startNanos;
+        private final String event;
+        private final List<StackTraceElement[]> samples = new ArrayList<>();
+        private long durationMillis;
+
+        private Stall(long startNanos, String event) {
+            this.startNanos = startNanos;
+            this.event = event;
+        }
+    }
+}
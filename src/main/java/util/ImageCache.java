@@ -1,26 +1,59 @@
 package util;
 
+import api.HttpTransport;
+import config.AppProperties;
+import lombok.extern.java.Log;
+
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.net.URL;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.logging.Level;
 
 /**
  * Utility class for caching and asynchronously loading images.
  */
+@Log
 public class ImageCache {
-    // Thread pool for loading images in background
-    private static final ExecutorService imageLoaderExecutor = Executors.newFixedThreadPool(3);
+    // Decodes downloaded bytes, sized to the CPU since the downloads themselves never block a thread
+    private static final ExecutorService decodeExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "image-decoder");
+                thread.setDaemon(true);
+                return thread;
+            });
+    
+    // Downloads images in background, visible ones first
+    private static final ImageLoadScheduler loadScheduler = new ImageLoadScheduler(
+            AppProperties.getInt("images.maxConcurrentDownloads", 8), url -> HttpTransport.fetchBytes(url).toFuture());
+    
+    // Decodes in progress, keyed like imageCache
+    private static final Map<String, CompletableFuture<Image>> pendingVariants = new ConcurrentHashMap<>();
     
     // Cache for storing loaded images
     private static final Map<String, Image> imageCache = new ConcurrentHashMap<>();
     
+    // Images no larger than this in either dimension are list thumbnails and are kept off-heap
+    private static final int THUMBNAIL_MAX_SIZE = 160;
+    
+    // Off-heap store for thumbnails, so large lists do not grow the heap
+    private static final ThumbnailStore thumbnailStore = new ThumbnailStore(
+            AppProperties.getLong("images.thumbnailStore.maxMegabytes", 128) * 1024 * 1024, 4 * 1024 * 1024);
+    
     // Placeholder image for when an image is loading
     private static final Image LOADING_PLACEHOLDER = createPlaceholderImage("Loading...");
     
@@ -39,48 +72,195 @@ public class ImageCache {
      */
     public static Image loadImageAsync(String url, int targetWidth, int targetHeight, 
                                       ImageConsumer imageConsumer) {
+        return loadImageAsync(url, targetWidth, targetHeight, (Object) null, imageConsumer);
+    }
+    
+    /**
+     * Asynchronously loads an image for a component inside a scroll pane.
+     * The download is prioritized by how close the owner is to the visible area of a scroll pane
+     * registered with {@link #trackViewport(JScrollPane)}, and is cancelled if the owner is
+     * discarded before it starts. The consumer is not called for cancelled downloads.
+     * 
+     * @param url The URL of the image to load
+     * @param targetWidth The target width for scaling the image (-1 for maintaining aspect ratio)
+     * @param targetHeight The target height for scaling the image
+     * @param owner The component that will display the image, or null to load it unconditionally
+     * @param imageConsumer A consumer that will be called with the loaded image
+     * @return A placeholder image that will be displayed while the actual image is loading
+     */
+    public static Image loadImageAsync(String url, int targetWidth, int targetHeight, Component owner,
+                                      ImageConsumer imageConsumer) {
+        return loadImageAsync(url, targetWidth, targetHeight, (Object) owner, imageConsumer);
+    }
+    
+    /**
+     * Asynchronously loads an image for something that works out its own load priority, such as
+     * a row painted through a shared renderer. The download is cancelled if the owner reports
+     * {@link LoadOwner#DISCARDED} before it starts, or is garbage collected.
+     * The consumer is not called for cancelled downloads.
+     * 
+     * @param url The URL of the image to load
+     * @param targetWidth The target width for scaling the image (-1 for maintaining aspect ratio)
+     * @param targetHeight The target height for scaling the image
+     * @param owner The owner of the image, must stay referenced while it is wanted
+     * @param imageConsumer A consumer that will be called with the loaded image
+     * @return A placeholder image that will be displayed while the actual image is loading
+     */
+    public static Image loadImageAsync(String url, int targetWidth, int targetHeight, LoadOwner owner,
+                                      ImageConsumer imageConsumer) {
+        return loadImageAsync(url, targetWidth, targetHeight, (Object) owner, imageConsumer);
+    }
+    
+    private static Image loadImageAsync(String url, int targetWidth, int targetHeight, Object owner,
+                                       ImageConsumer imageConsumer) {
         if (url == null || url.isEmpty()) {
             return ERROR_PLACEHOLDER;
         }
         
         // Check if the image is already in the cache
         String cacheKey = url + "_" + targetWidth + "_" + targetHeight;
-        Image cachedImage = imageCache.get(cacheKey);
+        boolean thumbnail = isThumbnail(targetWidth, targetHeight);
+        Image cachedImage = getCachedImage(url, targetWidth, targetHeight);
         if (cachedImage != null) {
             // If the image is already cached, return it immediately
             imageConsumer.imageLoaded(cachedImage);
             return cachedImage;
         }
         
-        // If not in cache, load it asynchronously
-        imageLoaderExecutor.submit(() -> {
-            try {
-                // Load the image from URL
-                URL imageUrl = new URL(url);
-                BufferedImage originalImage = ImageIO.read(imageUrl);
-                
-                if (originalImage != null) {
-                    // Scale the image
-                    Image scaledImage = scaleImage(originalImage, targetWidth, targetHeight);
-                    
-                    // Cache the scaled image
-                    imageCache.put(cacheKey, scaledImage);
-                    
-                    // Notify the consumer on the EDT
-                    SwingUtilities.invokeLater(() -> imageConsumer.imageLoaded(scaledImage));
-                } else {
-                    SwingUtilities.invokeLater(() -> imageConsumer.imageLoaded(ERROR_PLACEHOLDER));
+        // If not in cache, attach to the download for this URL (shared by every size and caller)
+        CompletableFuture<byte[]> download = loadScheduler.request(url, owner);
+        
+        // Decode each size once, however many callers are waiting for it
+        CompletableFuture<Image> variant = pendingVariants.computeIfAbsent(cacheKey, key -> download
+                .thenApplyAsync(bytes -> decodeImage(bytes, targetWidth, targetHeight), decodeExecutor)
+                .thenApply(decodedImage -> {
+                    if (decodedImage == null) {
+                        return null;
+                    }
+                    if (thumbnail) {
+                        BufferedImage thumbnailImage = scaleToBufferedImage(decodedImage, targetWidth, targetHeight);
+                        if (!thumbnailStore.put(key, thumbnailImage)) {
+                            imageCache.put(key, thumbnailImage);
+                        }
+                        return thumbnailImage;
+                    }
+                    Image scaledImage = scaleImage(decodedImage, targetWidth, targetHeight);
+                    imageCache.put(key, scaledImage);
+                    return scaledImage;
+                }));
+        variant.whenComplete((scaledImage, error) -> pendingVariants.remove(cacheKey, variant));
+        
+        variant.whenComplete((scaledImage, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                // The owner was discarded, nobody is waiting for this image
+                return;
+            }
+            if (cause != null || scaledImage == null) {
+                if (cause != null) {
+                    log.log(Level.WARNING, "Failed to load image " + url + ": " + cause.getMessage());
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
                 SwingUtilities.invokeLater(() -> imageConsumer.imageLoaded(ERROR_PLACEHOLDER));
+                return;
             }
+            // Notify the consumer on the EDT
+            SwingUtilities.invokeLater(() -> imageConsumer.imageLoaded(scaledImage));
         });
         
         // Return the loading placeholder immediately
         return LOADING_PLACEHOLDER;
     }
     
+    /**
+     * Gets an image from the cache without loading anything.
+     * 
+     * @param url The URL of the image
+     * @param targetWidth The width it was loaded with
+     * @param targetHeight The height it was loaded with
+     * @return The cached image, or null if that URL has not been loaded at that size
+     */
+    public static Image getCachedImage(String url, int targetWidth, int targetHeight) {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        String cacheKey = url + "_" + targetWidth + "_" + targetHeight;
+        Image cachedImage = imageCache.get(cacheKey);
+        if (cachedImage == null && isThumbnail(targetWidth, targetHeight)) {
+            cachedImage = thumbnailStore.get(cacheKey);
+        }
+        return cachedImage;
+    }
+    
+    /**
+     * Checks whether an image handed to a consumer is the placeholder for a failed load.
+     * 
+     * @param image The image to check
+     * @return true if the image could not be loaded
+     */
+    public static boolean isErrorImage(Image image) {
+        return image == ERROR_PLACEHOLDER;
+    }
+    
+    /**
+     * Re-prioritizes pending image downloads whenever the given scroll pane is scrolled or resized,
+     * so that images for the visible rows load first.
+     * 
+     * @param scrollPane The scroll pane whose viewport drives the load order
+     */
+    public static void trackViewport(JScrollPane scrollPane) {
+        scrollPane.getViewport().addChangeListener(e -> loadScheduler.refreshPriorities());
+    }
+    
+    /**
+     * Re-prioritizes pending image downloads after components were added or removed,
+     * cancelling downloads for components that are no longer part of the UI.
+     */
+    public static void refreshLoadPriorities() {
+        loadScheduler.refreshPriorities();
+    }
+    
+    /**
+     * Decodes image bytes at roughly the requested size, returning null if the format is not recognized.
+     * Whole source pixels are skipped while reading, so a thumbnail never allocates a full-size raster.
+     */
+    private static BufferedImage decodeImage(byte[] bytes, int targetWidth, int targetHeight) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = subsamplingStep(reader.getWidth(0), reader.getHeight(0), targetWidth, targetHeight);
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Picks the largest whole-pixel subsampling step that still leaves the decoded image
+     * at least as large as the target, so the final smooth scale only ever shrinks it.
+     */
+    private static int subsamplingStep(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        int step = Integer.MAX_VALUE;
+        if (targetWidth > 0) {
+            step = Math.min(step, sourceWidth / targetWidth);
+        }
+        if (targetHeight > 0) {
+            step = Math.min(step, sourceHeight / targetHeight);
+        }
+        return step == Integer.MAX_VALUE ? 1 : Math.max(1, step);
+    }
+    
     /**
      * Scales an image to the specified dimensions.
      */
@@ -88,6 +268,38 @@ public class ImageCache {
         return image.getScaledInstance(width, height, Image.SCALE_SMOOTH);
     }
     
+    /**
+     * Scales an image into a new BufferedImage right away, using bilinear filtering.
+     * A size of -1 keeps the aspect ratio, like {@link Image#getScaledInstance}.
+     * 
+     * @param image The image to scale
+     * @param width The target width, or -1
+     * @param height The target height, or -1
+     * @return The scaled image
+     */
+    public static BufferedImage scaleToBufferedImage(BufferedImage image, int width, int height) {
+        if (width <= 0) {
+            width = Math.max(1, Math.round((float) image.getWidth() * height / image.getHeight()));
+        } else if (height <= 0) {
+            height = Math.max(1, Math.round((float) image.getHeight() * width / image.getWidth()));
+        }
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = scaled.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(image, 0, 0, width, height, null);
+        g2d.dispose();
+        return scaled;
+    }
+    
+    /**
+     * Whether an image of the requested size counts as a thumbnail.
+     */
+    private static boolean isThumbnail(int targetWidth, int targetHeight) {
+        return (targetWidth > 0 || targetHeight > 0)
+                && targetWidth <= THUMBNAIL_MAX_SIZE && targetHeight <= THUMBNAIL_MAX_SIZE;
+    }
+    
     /**
      * Creates a simple placeholder image with text.
      */
@@ -107,6 +319,27 @@ public class ImageCache {
      */
     public static void clearCache() {
         imageCache.clear();
+        thumbnailStore.clear();
+    }
+    
+    /**
+     * Something an image is loaded for that is not a component of its own, such as a row of a list
+     * painted through a shared renderer. Asked for its priority on the EDT whenever load priorities
+     * are refreshed.
+     */
+    public interface LoadOwner {
+        // Load priorities, lower loads first
+        int VISIBLE = ImageLoadScheduler.PRIORITY_VISIBLE;
+        int NEAR = ImageLoadScheduler.PRIORITY_NEAR;
+        // Far away, the download waits until the owner comes closer again
+        int FAR = ImageLoadScheduler.PRIORITY_FAR;
+        // The image is no longer needed, its download is cancelled unless someone else wants it
+        int DISCARDED = ImageLoadScheduler.PRIORITY_DISCARDED;
+
+        /**
+         * @return VISIBLE, NEAR, FAR or DISCARDED
+         */
+        int loadPriority();
     }
     
     /**
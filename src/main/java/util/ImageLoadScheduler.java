@@ -0,0 +1,265 @@
+package util;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Schedules image downloads so that images for components inside the visible part of a
+ * scroll pane are fetched first, images just outside it next, and images far away from it
+ * not at all until they come back into range.
+ * Downloads whose components have all been discarded are cancelled. Owners that are not components
+ * of their own, such as rows painted through a shared renderer, report their priority through
+ * {@link ImageCache.LoadOwner}.
+ * There is at most one pending download per URL; every requester shares it.
+ */
+class ImageLoadScheduler {
+    // Priorities, lower runs first
+    static final int PRIORITY_VISIBLE = 0;
+    static final int PRIORITY_NEAR = 1;
+    static final int PRIORITY_FAR = 2;
+    // Reported by a LoadOwner that no longer needs its image
+    static final int PRIORITY_DISCARDED = -1;
+
+    private final int maxConcurrent;
+    private final Function<String, CompletableFuture<byte[]>> loader;
+
+    // Downloads that have been requested and have not finished yet, keyed by URL (guarded by this)
+    private final Map<String, DownloadTask> pending = new HashMap<>();
+    // Downloads waiting for a free slot, best first (guarded by this)
+    private final PriorityQueue<DownloadTask> queue = new PriorityQueue<>();
+    private int running;
+    private long nextSequence;
+
+    // Set while a priority pass is waiting to run on the EDT, to coalesce bursts of scroll events
+    private boolean refreshScheduled;
+
+    /**
+     * Creates a new ImageLoadScheduler.
+     *
+     * @param maxConcurrent The number of downloads that may be in flight at the same time
+     * @param loader Starts downloading the image bytes for a URL without blocking
+     */
+    ImageLoadScheduler(int maxConcurrent, Function<String, CompletableFuture<byte[]>> loader) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.loader = loader;
+    }
+
+    /**
+     * Requests the encoded bytes of the image at the given URL, joining a pending download for it if there is one.
+     *
+     * @param url The URL of the image
+     * @param owner The Component or LoadOwner the image is for, or null if it is needed regardless of scrolling
+     * @return A future completed with the downloaded bytes, or cancelled if every owner is discarded
+     */
+    synchronized CompletableFuture<byte[]> request(String url, Object owner) {
+        DownloadTask task = pending.get(url);
+        if (task == null) {
+            task = new DownloadTask(url, nextSequence++);
+            pending.put(url, task);
+            DownloadTask created = task;
+            task.result.whenComplete((image, error) -> finished(created));
+        }
+
+        if (owner == null) {
+            task.pinned = true;
+        } else {
+            task.owners.putIfAbsent(owner, !(owner instanceof Component component) || component.isDisplayable());
+        }
+        // Layout usually has not happened yet, so the next refresh pass settles the real priority
+        int priority = PRIORITY_NEAR;
+        if (owner == null) {
+            priority = PRIORITY_VISIBLE;
+        } else if (SwingUtilities.isEventDispatchThread()) {
+            if (owner instanceof ImageCache.LoadOwner loadOwner) {
+                int ownerPriority = loadOwner.loadPriority();
+                // Already unwanted, the next refresh pass cancels it
+                priority = ownerPriority == PRIORITY_DISCARDED ? PRIORITY_FAR : ownerPriority;
+            } else if (((Component) owner).isShowing()) {
+                priority = priorityOf((Component) owner);
+            }
+        }
+        if (!task.started && (!task.queued || priority < task.priority)) {
+            requeue(task, priority);
+        }
+        dispatch();
+        return task.result;
+    }
+
+    /**
+     * Schedules a pass on the EDT that recomputes the priority of every queued download from
+     * the current position of its components, parks downloads that have scrolled far away
+     * and cancels the ones whose components have been discarded.
+     * Safe to call from any thread; calls made before the pass runs are coalesced.
+     */
+    void refreshPriorities() {
+        synchronized (this) {
+            if (refreshScheduled) {
+                return;
+            }
+            refreshScheduled = true;
+        }
+        SwingUtilities.invokeLater(this::reprioritize);
+    }
+
+    /**
+     * Recomputes priorities, must run on the EDT since it inspects component geometry.
+     */
+    private synchronized void reprioritize() {
+        refreshScheduled = false;
+        for (DownloadTask task : new ArrayList<>(pending.values())) {
+            if (task.started) {
+                continue;
+            }
+            int priority = task.pinned ? PRIORITY_VISIBLE : Integer.MAX_VALUE;
+            Iterator<Map.Entry<Object, Boolean>> owners = task.owners.entrySet().iterator();
+            while (owners.hasNext()) {
+                Map.Entry<Object, Boolean> entry = owners.next();
+                if (entry.getKey() instanceof ImageCache.LoadOwner loadOwner) {
+                    int ownerPriority = loadOwner.loadPriority();
+                    if (ownerPriority == PRIORITY_DISCARDED) {
+                        owners.remove();
+                    } else {
+                        priority = Math.min(priority, ownerPriority);
+                    }
+                    continue;
+                }
+                Component owner = (Component) entry.getKey();
+                if (owner.isDisplayable()) {
+                    entry.setValue(true);
+                    priority = Math.min(priority, priorityOf(owner));
+                } else if (entry.getValue()) {
+                    // Was on screen once and has since been removed from the hierarchy
+                    owners.remove();
+                } else {
+                    // Created but not added yet, treat it like a component just below the fold
+                    priority = Math.min(priority, PRIORITY_NEAR);
+                }
+            }
+
+            if (priority == Integer.MAX_VALUE) {
+                // Nobody is waiting for this image any more
+                cancel(task);
+            } else if (priority == PRIORITY_FAR) {
+                park(task);
+            } else if (!task.queued || priority != task.priority) {
+                requeue(task, priority);
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Works out how close a component is to the visible area of its enclosing scroll pane.
+     */
+    private static int priorityOf(Component owner) {
+        if (!owner.isShowing()) {
+            // On a card that is not currently shown
+            return PRIORITY_FAR;
+        }
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, owner);
+        if (viewport == null || viewport.getView() == null) {
+            return PRIORITY_VISIBLE;
+        }
+        Rectangle visible = viewport.getViewRect();
+        Rectangle bounds = SwingUtilities.convertRectangle(owner.getParent(), owner.getBounds(), viewport.getView());
+        if (bounds.intersects(visible)) {
+            return PRIORITY_VISIBLE;
+        }
+        // One screen above and one screen below still count as near
+        Rectangle near = new Rectangle(visible.x, visible.y - visible.height, visible.width, visible.height * 3);
+        return bounds.intersects(near) ? PRIORITY_NEAR : PRIORITY_FAR;
+    }
+
+    private void requeue(DownloadTask task, int priority) {
+        // The queue only orders entries on insertion, so take the task out before changing its priority
+        queue.remove(task);
+        task.priority = priority;
+        task.queued = true;
+        queue.add(task);
+    }
+
+    private void park(DownloadTask task) {
+        if (task.queued) {
+            queue.remove(task);
+            task.queued = false;
+        }
+    }
+
+    private void cancel(DownloadTask task) {
+        park(task);
+        pending.remove(task.url, task);
+        task.result.cancel(false);
+    }
+
+    /**
+     * Starts the best queued downloads while there are free slots.
+     */
+    private synchronized void dispatch() {
+        while (running < maxConcurrent && !queue.isEmpty()) {
+            DownloadTask task = queue.poll();
+            task.queued = false;
+            task.started = true;
+            running++;
+            task.start();
+        }
+    }
+
+    private synchronized void finished(DownloadTask task) {
+        pending.remove(task.url, task);
+        if (task.started) {
+            running--;
+            dispatch();
+        }
+    }
+
+    /**
+     * A single download, shared by everyone who requested its URL while it was pending.
+     */
+    private final class DownloadTask implements Comparable<DownloadTask> {
+        private final String url;
+        private final long sequence;
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        // Requesting components and LoadOwners, mapped to whether they have been seen in the hierarchy (guarded by scheduler)
+        private final Map<Object, Boolean> owners = new WeakHashMap<>();
+        private boolean pinned;
+        private boolean queued;
+        private boolean started;
+        private int priority;
+
+        private DownloadTask(String url, long sequence) {
+            this.url = url;
+            this.sequence = sequence;
+        }
+
+        private void start() {
+            CompletableFuture<byte[]> download;
+            try {
+                download = loader.apply(url);
+            } catch (RuntimeException e) {
+                download = CompletableFuture.failedFuture(e);
+            }
+            download.whenComplete((image, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(image);
+                }
+            });
+        }
+
+        @Override
+        public int compareTo(DownloadTask other) {
+            // Ties keep request order, so items earlier in a list still load first
+            int byPriority = Integer.compare(priority, other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package util;
+
+import data.Card;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads pages of a list ordered by card id using keyset pagination.
+ * A page is read as "the next cards after the last id of the page before it", which the database
+ * answers with a seek on the primary key index, however deep into the list the page is. The last id
+ * of every page loaded so far is remembered, so scrolling on from a page, or back to it, never needs
+ * an offset. Only a jump to a page whose predecessor was never loaded falls back to an offset query;
+ * from there on, keyset pagination continues.
+ */
+public class KeysetPageLoader implements LazyListModel.PageLoader {
+    private final int pageSize;
+    private final KeysetQuery keysetQuery;
+    private final LazyListModel.PageLoader offsetQuery;
+    // Last id of each loaded page, by page number (one id per page, read by several page-loader threads)
+    private final Map<Integer, String> lastIds = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new KeysetPageLoader.
+     *
+     * @param pageSize The page size of the model, offsets are always multiples of it
+     * @param keysetQuery Reads the cards following an id, in id order
+     * @param offsetQuery Reads cards by offset in id order, used when no preceding id is known
+     */
+    public KeysetPageLoader(int pageSize, KeysetQuery keysetQuery, LazyListModel.PageLoader offsetQuery) {
+        this.pageSize = pageSize;
+        this.keysetQuery = keysetQuery;
+        this.offsetQuery = offsetQuery;
+    }
+
+    @Override
+    public List<Card> load(int offset, int limit) throws Exception {
+        int page = offset / pageSize;
+        List<Card> cards;
+        if (page == 0) {
+            cards = keysetQuery.load(null, limit);
+        } else if (lastIds.containsKey(page - 1)) {
+            cards = keysetQuery.load(lastIds.get(page - 1), limit);
+        } else {
+            cards = offsetQuery.load(offset, limit);
+        }
+        if (!cards.isEmpty()) {
+            lastIds.put(page, cards.get(cards.size() - 1).getId());
+        }
+        return cards;
+    }
+
+    /**
+     * Reads the cards after a given id.
+     */
+    public interface KeysetQuery {
+        /**
+         * @param afterId The id to start after, or null to start at the first card
+         * @param limit The maximum number of cards to return
+         * @return The cards with a greater id, in id order
+         */
+        List<Card> load(String afterId, int limit) throws Exception;
+    }
+}
@@ -1,93 +1,300 @@
 package util;
 
 import data.Card;
+import lombok.extern.java.Log;
 
 import javax.swing.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.function.Function;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 /**
- * A list model that supports lazy loading of items.
- * This helps improve performance when displaying large lists by only creating
- * UI components for visible items.
+ * A list model that loads cards page by page as they come into view.
+ * Pages are loaded on a background thread and handed to the model on the Event Dispatch Thread,
+ * which is the only thread that reads or changes the model. The model only ever holds data,
+ * never components, so rendering stays with the list's cell renderer on the EDT.
+ * Pages far outside the visible range are evicted and reloaded if the user scrolls back.
+ * A page that fails to load is retried with a growing delay, its rows stay in the loading state meanwhile.
  */
-public class LazyListModel extends AbstractListModel<JPanel> {
-    private final List<Card> cards;
-    private final Function<Card, JPanel> panelCreator;
-    private final List<JPanel> cachedPanels;
-    private final int batchSize;
-    
+@Log
+public class LazyListModel extends AbstractListModel<Card> {
+    // Shared by all models, loads pages in the background
+    private static final ExecutorService pageLoaderExecutor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "page-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Delay before retrying a page that failed to load, doubled on every further failure
+    private static final long FIRST_RETRY_DELAY_MS = 1000;
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    private final int size;
+    private final int pageSize;
+    private final int residentPages;
+    private final PageLoader pageLoader;
+
+    // Everything below is only touched on the EDT
+    private final Map<Integer, List<Card>> pages = new HashMap<>();
+    // Rows exposed to the list so far, see revealIncrementally
+    private int revealedSize;
+    private final Set<Integer> loadingPages = new HashSet<>();
+    // Pages whose last load failed, by page
+    private final Map<Integer, PageFailure> failedPages = new HashMap<>();
+    private PageListener pageListener = new PageListener() { };
+    private int firstVisiblePage;
+    private int lastVisiblePage;
+    private boolean disposed;
+
     /**
      * Creates a new LazyListModel.
-     * 
-     * @param cards The list of cards to display
-     * @param panelCreator A function that creates a panel for a card
-     * @param batchSize The number of items to load at once
+     *
+     * @param size The total number of cards
+     * @param pageSize The number of cards loaded at once
+     * @param residentPages How many pages around the visible range are kept before being evicted
+     * @param pageLoader Loads a page of cards, called on a background thread
      */
-    public LazyListModel(List<Card> cards, Function<Card, JPanel> panelCreator, int batchSize) {
-        this.cards = cards;
-        this.panelCreator = panelCreator;
-        this.batchSize = batchSize;
-        this.cachedPanels = new ArrayList<>(cards.size());
-        
-        // Initialize with null values to be filled in on demand
-        for (int i = 0; i < cards.size(); i++) {
-            cachedPanels.add(null);
-        }
+    public LazyListModel(int size, int pageSize, int residentPages, PageLoader pageLoader) {
+        this.size = size;
+        this.pageSize = pageSize;
+        this.residentPages = residentPages;
+        this.pageLoader = pageLoader;
+        this.revealedSize = size;
+    }
+
+    /**
+     * Creates a model over cards that are already in memory, such as API search results.
+     * Only the paging, prefetching and eviction of per-page work applies.
+     *
+     * @param cards The cards to show
+     * @return A model over the given cards
+     */
+    public static LazyListModel of(List<Card> cards) {
+        List<Card> snapshot = List.copyOf(cards);
+        return new LazyListModel(snapshot.size(), 50, 4,
+                (offset, limit) -> snapshot.subList(offset, Math.min(offset + limit, snapshot.size())));
     }
-    
+
     @Override
     public int getSize() {
-        return cards.size();
+        return revealedSize;
+    }
+
+    /**
+     * @return The total number of cards, including rows not revealed yet
+     */
+    public int getTotalSize() {
+        return size;
     }
-    
+
+    /**
+     * Exposes the rows to the list a chunk at a time instead of all at once.
+     * Each EDT slice keeps adding chunks until its time budget is used up, then yields to the
+     * event queue so input and painting are handled before the next slice runs.
+     * The first chunk is always added straight away, so the first screenful appears immediately.
+     *
+     * @param chunkSize The number of rows added per step
+     * @param sliceBudgetMillis How long a single EDT slice may spend adding rows
+     */
+    public void revealIncrementally(int chunkSize, long sliceBudgetMillis) {
+        int previous = revealedSize;
+        revealedSize = 0;
+        if (previous > 0) {
+            fireIntervalRemoved(this, 0, previous - 1);
+        }
+        revealNextSlice(chunkSize, TimeUnit.MILLISECONDS.toNanos(sliceBudgetMillis));
+    }
+
+    private void revealNextSlice(int chunkSize, long budgetNanos) {
+        long start = System.nanoTime();
+        while (!disposed && revealedSize < size) {
+            int from = revealedSize;
+            revealedSize = Math.min(size, from + chunkSize);
+            fireIntervalAdded(this, from, revealedSize - 1);
+            if (System.nanoTime() - start > budgetNanos) {
+                SwingUtilities.invokeLater(() -> revealNextSlice(chunkSize, budgetNanos));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the card at an index, scheduling its page to load if it is not resident.
+     *
+     * @param index The index of the card
+     * @return The card, or null while its page is loading
+     */
     @Override
-    public JPanel getElementAt(int index) {
-        // Check if the panel is already created
-        JPanel panel = cachedPanels.get(index);
-        if (panel == null) {
-            // Create the panel on demand
-            panel = panelCreator.apply(cards.get(index));
-            cachedPanels.set(index, panel);
-            
-            // Pre-load next batch of panels in background
-            if (index % batchSize == 0) {
-                preloadBatch(index + 1, Math.min(index + batchSize, cards.size()));
+    public Card getElementAt(int index) {
+        int page = index / pageSize;
+        List<Card> cards = pages.get(page);
+        if (cards == null) {
+            loadPage(page);
+            return null;
+        }
+        int offset = index - page * pageSize;
+        return offset < cards.size() ? cards.get(offset) : null;
+    }
+
+    /**
+     * Sets a listener that is called on the EDT with each page once it has loaded and once it is
+     * evicted, e.g. to start and cancel fetching the images of its cards.
+     *
+     * @param listener The listener
+     */
+    public void setPageListener(PageListener listener) {
+        this.pageListener = listener;
+    }
+
+    /**
+     * Tells the model which rows are on screen, so it can load the pages around them
+     * and evict the pages that are far away.
+     *
+     * @param firstIndex The first visible row, or -1 if none
+     * @param lastIndex The last visible row, or -1 if none
+     */
+    public void setVisibleRange(int firstIndex, int lastIndex) {
+        if (firstIndex < 0 || lastIndex < 0 || disposed) {
+            return;
+        }
+        firstVisiblePage = firstIndex / pageSize;
+        lastVisiblePage = lastIndex / pageSize;
+
+        // Prefetch one page on either side of what is visible
+        int lastPage = (size - 1) / pageSize;
+        for (int page = Math.max(0, firstVisiblePage - 1); page <= Math.min(lastPage, lastVisiblePage + 1); page++) {
+            loadPage(page);
+        }
+
+        Iterator<Map.Entry<Integer, List<Card>>> resident = pages.entrySet().iterator();
+        while (resident.hasNext()) {
+            Map.Entry<Integer, List<Card>> page = resident.next();
+            if (!isNearVisibleRange(page.getKey())) {
+                resident.remove();
+                pageListener.pageEvicted(page.getKey() * pageSize, page.getValue());
+            }
+        }
+    }
+
+    /**
+     * Stops loading and drops every resident page; called when the view showing the model is discarded.
+     */
+    public void dispose() {
+        disposed = true;
+        pages.forEach((page, cards) -> pageListener.pageEvicted(page * pageSize, cards));
+        pages.clear();
+        loadingPages.clear();
+        failedPages.clear();
+    }
+
+    private boolean isNearVisibleRange(int page) {
+        return page >= firstVisiblePage - residentPages && page <= lastVisiblePage + residentPages;
+    }
+
+    private void loadPage(int page) {
+        if (disposed || pages.containsKey(page) || loadingPages.contains(page)) {
+            return;
+        }
+        PageFailure failure = failedPages.get(page);
+        if (failure != null && System.currentTimeMillis() < failure.retryAt()) {
+            // Backing off, so a failing source is not hit again on every repaint
+            return;
+        }
+        loadingPages.add(page);
+        int offset = page * pageSize;
+        int limit = Math.min(pageSize, size - offset);
+        pageLoaderExecutor.execute(() -> {
+            List<Card> cards;
+            try {
+                // Copy so the page does not hold on to a larger backing list
+                cards = new ArrayList<>(pageLoader.load(offset, limit));
+            } catch (Exception e) {
+                log.log(Level.SEVERE, "Failed to load cards " + offset + " to " + (offset + limit), e);
+                cards = null;
             }
+            List<Card> loaded = cards;
+            SwingUtilities.invokeLater(() -> pageLoaded(page, loaded));
+        });
+    }
+
+    private void pageLoaded(int page, List<Card> cards) {
+        loadingPages.remove(page);
+        if (cards == null) {
+            pageFailed(page);
+            return;
         }
-        return panel;
+        failedPages.remove(page);
+        if (disposed || !isNearVisibleRange(page)) {
+            // Scrolled away while loading, it will be requested again when it is visible
+            return;
+        }
+        pages.put(page, cards);
+        int offset = page * pageSize;
+        fireContentsChanged(this, offset, offset + cards.size() - 1);
+        pageListener.pageLoaded(offset, cards);
     }
-    
+
     /**
-     * Preloads a batch of panels in the background.
-     * 
-     * @param startIndex The start index of the batch
-     * @param endIndex The end index of the batch (exclusive)
+     * Schedules a retry of a failed page, waiting twice as long after every failure.
      */
-    private void preloadBatch(int startIndex, int endIndex) {
-        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
-            @Override
-            protected Void doInBackground() {
-                for (int i = startIndex; i < endIndex; i++) {
-                    if (cachedPanels.get(i) == null) {
-                        JPanel panel = panelCreator.apply(cards.get(i));
-                        cachedPanels.set(i, panel);
-                    }
-                }
-                return null;
+    private void pageFailed(int page) {
+        if (disposed) {
+            return;
+        }
+        PageFailure previous = failedPages.get(page);
+        int attempts = previous != null ? previous.attempts() + 1 : 1;
+        long delay = Math.min(MAX_RETRY_DELAY_MS, FIRST_RETRY_DELAY_MS << Math.min(attempts - 1, 16));
+        failedPages.put(page, new PageFailure(attempts, System.currentTimeMillis() + delay));
+        Timer retry = new Timer((int) delay, e -> {
+            // Repainting the rows asks for them again, which retries the page if it is still wanted
+            int offset = page * pageSize;
+            if (!disposed && offset < revealedSize) {
+                fireContentsChanged(this, offset, Math.min(revealedSize, offset + pageSize) - 1);
             }
-        };
-        worker.execute();
+        });
+        retry.setRepeats(false);
+        retry.start();
+    }
+
+    private record PageFailure(int attempts, long retryAt) {
     }
-    
+
     /**
-     * Clears the cached panels.
+     * Told about pages as they become resident and as they are dropped again.
      */
-    public void clearCache() {
-        for (int i = 0; i < cachedPanels.size(); i++) {
-            cachedPanels.set(i, null);
+    public interface PageListener {
+        /**
+         * @param offset The index of the first card of the page
+         * @param cards The cards of the page
+         */
+        default void pageLoaded(int offset, List<Card> cards) {
+        }
+
+        /**
+         * @param offset The index of the first card of the page
+         * @param cards The cards of the page
+         */
+        default void pageEvicted(int offset, List<Card> cards) {
         }
-        fireContentsChanged(this, 0, getSize() - 1);
     }
-}
\ No newline at end of file
+
+    /**
+     * Loads a slice of the cards.
+     */
+    public interface PageLoader {
+        /**
+         * @param offset The index of the first card
+         * @param limit The maximum number of cards to return
+         * @return The cards in that range, in list order
+         */
+        List<Card> load(int offset, int limit) throws Exception;
+    }
+}
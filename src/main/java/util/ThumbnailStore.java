@@ -0,0 +1,218 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps small images outside the Java heap.
+ * Pixels are delta-filtered and deflated, then appended to fixed-size direct buffers, so thousands
+ * of thumbnails cost the garbage collector nothing. An image is inflated back into a
+ * BufferedImage only when it is asked for. When the store is full the oldest buffer is recycled,
+ * dropping the thumbnails it held.
+ */
+class ThumbnailStore {
+    private static final int HEADER_BYTES = 8; // width and height
+
+    private final int segmentSize;
+    private final int maxSegments;
+
+    // Oldest segment first, the last one is being filled (guarded by this)
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final Map<String, Entry> index = new HashMap<>();
+
+    /**
+     * Creates a new ThumbnailStore.
+     *
+     * @param capacityBytes The total off-heap memory the store may use
+     * @param segmentSize The size of each direct buffer, also the largest thumbnail that can be stored
+     */
+    ThumbnailStore(long capacityBytes, int segmentSize) {
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(1, capacityBytes / segmentSize);
+    }
+
+    /**
+     * Compresses an image into the store, replacing any image stored under the same key.
+     *
+     * @param key The cache key of the image
+     * @param image The image to store
+     * @return true if the image was stored, false if it is too large for a segment
+     */
+    boolean put(String key, BufferedImage image) {
+        // Compress outside the lock, only the copy into the buffer needs it
+        byte[] encoded = encode(image);
+        if (encoded.length > segmentSize) {
+            return false;
+        }
+        synchronized (this) {
+            Segment segment = segments.peekLast();
+            if (segment == null || segment.buffer.remaining() < encoded.length) {
+                segment = nextSegment();
+            }
+            int offset = segment.buffer.position();
+            segment.buffer.put(encoded);
+            segment.keys.add(key);
+            index.put(key, new Entry(segment, offset, encoded.length));
+        }
+        return true;
+    }
+
+    /**
+     * Inflates a stored image.
+     *
+     * @param key The cache key of the image
+     * @return A new BufferedImage, or null if the key is not (or no longer) stored
+     */
+    BufferedImage get(String key) {
+        byte[] encoded;
+        synchronized (this) {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            encoded = new byte[entry.length];
+            entry.segment.buffer.get(entry.offset, encoded);
+        }
+        return decode(encoded);
+    }
+
+    /**
+     * Drops every stored image, keeping the allocated buffers for reuse.
+     */
+    synchronized void clear() {
+        index.clear();
+        for (Segment segment : segments) {
+            segment.reset();
+        }
+    }
+
+    /**
+     * @return The number of images currently stored
+     */
+    synchronized int size() {
+        return index.size();
+    }
+
+    private Segment nextSegment() {
+        Segment segment;
+        if (segments.size() < maxSegments) {
+            segment = new Segment(ByteBuffer.allocateDirect(segmentSize));
+        } else {
+            // Recycle the oldest buffer and forget what was in it
+            segment = segments.pollFirst();
+            for (String key : segment.keys) {
+                Entry entry = index.get(key);
+                if (entry != null && entry.segment == segment) {
+                    index.remove(key);
+                }
+            }
+            segment.reset();
+        }
+        segments.addLast(segment);
+        return segment;
+    }
+
+    /**
+     * Encodes width, height and the ARGB pixels, each byte stored as the difference to the same
+     * channel of the pixel to its left, which makes smooth areas compress far better.
+     */
+    private static byte[] encode(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+
+        byte[] raw = new byte[HEADER_BYTES + pixels.length * 4];
+        ByteBuffer.wrap(raw).putInt(width).putInt(height);
+        int previous = 0;
+        for (int i = 0, p = HEADER_BYTES; i < pixels.length; i++, p += 4) {
+            if (i % width == 0) {
+                previous = 0;
+            }
+            int pixel = pixels[i];
+            raw[p] = (byte) ((pixel >>> 24) - (previous >>> 24));
+            raw[p + 1] = (byte) ((pixel >>> 16) - (previous >>> 16));
+            raw[p + 2] = (byte) ((pixel >>> 8) - (previous >>> 8));
+            raw[p + 3] = (byte) (pixel - previous);
+            previous = pixel;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static BufferedImage decode(byte[] encoded) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(encoded);
+            byte[] header = new byte[HEADER_BYTES];
+            inflater.inflate(header);
+            ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+            int width = headerBuffer.getInt();
+            int height = headerBuffer.getInt();
+
+            byte[] raw = new byte[width * height * 4];
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            int a = 0, r = 0, g = 0, b = 0;
+            for (int i = 0, p = 0; i < pixels.length; i++, p += 4) {
+                if (i % width == 0) {
+                    a = r = g = b = 0;
+                }
+                a = (a + raw[p]) & 0xFF;
+                r = (r + raw[p + 1]) & 0xFF;
+                g = (g + raw[p + 2]) & 0xFF;
+                b = (b + raw[p + 3]) & 0xFF;
+                pixels[i] = a << 24 | r << 16 | g << 8 | b;
+            }
+            return image;
+        } catch (DataFormatException e) {
+            // Only possible if the buffer was overwritten, treat it as a miss
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static final class Segment {
+        private final ByteBuffer buffer;
+        private final List<String> keys = new ArrayList<>();
+
+        private Segment(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private void reset() {
+            buffer.clear();
+            keys.clear();
+        }
+    }
+
+    private record Entry(Segment segment, int offset, int length) {
+    }
+}
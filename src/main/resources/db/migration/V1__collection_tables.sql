@@ -0,0 +1,27 @@
+-- The collection tables as Hibernate created them before migrations were introduced.
+-- "if not exists" lets databases created back then take this version over unchanged.
+create table if not exists card (
+    id varchar(255) not null primary key,
+    averagesellprice numeric(38, 2),
+    image_large_url varchar(255),
+    image_small_url varchar(255),
+    name varchar(255),
+    number varchar(255),
+    rarity varchar(255),
+    series varchar(255),
+    setid varchar(255),
+    setname varchar(255),
+    supertype varchar(255)
+);
+
+create table if not exists card_subtypes (
+    card_id varchar(255) not null,
+    subtype varchar(255),
+    constraint fk_card_subtypes_card foreign key (card_id) references card (id)
+);
+
+create table if not exists card_types (
+    card_id varchar(255) not null,
+    type varchar(255),
+    constraint fk_card_types_card foreign key (card_id) references card (id)
+);
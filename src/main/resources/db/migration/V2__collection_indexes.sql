@@ -0,0 +1,7 @@
+-- Secondary indexes for filtering and sorting the collection, and for reading a card's subtypes and types
+create index if not exists idx_card_name on card (name);
+create index if not exists idx_card_set_id on card (setid);
+create index if not exists idx_card_rarity on card (rarity);
+create index if not exists idx_card_supertype on card (supertype);
+create index if not exists idx_card_subtypes_card_id on card_subtypes (card_id);
+create index if not exists idx_card_types_card_id on card_types (card_id);
@@ -0,0 +1,13 @@
+-- Price history of collected cards, in segments of delta-encoded points, see PriceHistoryStore.
+-- tier 0 holds the recorded snapshots, tier 1 daily and tier 2 weekly rollups of older snapshots.
+-- The primary key serves the range queries: one card, one tier, ordered by time.
+create table if not exists price_history_segment (
+    card_id varchar(255) not null,
+    tier tinyint not null,
+    first_time bigint not null,
+    last_time bigint not null,
+    last_cents bigint not null,
+    point_count int not null,
+    data varbinary(4096) not null,
+    primary key (card_id, tier, first_time)
+);
@@ -0,0 +1,227 @@
+package database;
+
+import data.Card;
+import data.CardMarket;
+import data.GermanPriceInfo;
+import data.ImageInfo;
+import data.SetInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CollectionExportImportTest {
+    @TempDir
+    Path directory;
+
+    private InMemoryCardRepository source;
+    private InMemoryCardRepository target;
+    private CollectionIndex targetIndex;
+    private CollectionWriter targetWriter;
+    private final List<Card> importedChunks = new ArrayList<>();
+
+    @BeforeEach
+    void createRepositories() {
+        source = new InMemoryCardRepository();
+        for (Card card : cards()) {
+            source.cards.put(card.getId(), card);
+        }
+        target = new InMemoryCardRepository();
+        targetIndex = new CollectionIndex();
+        targetWriter = new CollectionWriter(target.repository());
+    }
+
+    @AfterEach
+    void stopWriter() throws InterruptedException {
+        targetWriter.destroy();
+    }
+
+    @Test
+    void csvExportImportsBackToTheSameCards() throws IOException {
+        Path file = directory.resolve("collection.csv");
+
+        int written = new CollectionExporter(source.repository()).export(file, CollectionExporter.Format.CSV, count -> {
+        });
+        CollectionImporter.ImportResult result = importer().importFile(file, (read, total, imported) -> {
+        });
+
+        assertEquals(source.cards.size(), written);
+        assertEquals(new CollectionImporter.ImportResult(written, written, 0, List.of()), result);
+        assertEquals(List.copyOf(source.cards.values()), List.copyOf(target.cards.values()));
+        assertEquals(List.copyOf(target.cards.values()), importedChunks);
+        assertEquals(written, targetIndex.size());
+    }
+
+    @Test
+    void jsonLinesExportImportsBackToTheSameCards() throws IOException {
+        Path file = directory.resolve("collection.jsonl");
+        // JSON Lines leaves out the prices object of a card without a price, as the API does
+        for (Card card : source.cards.values()) {
+            if (card.getCardMarket().getPriceInfo().getAverageSellPrice() == null) {
+                card.setCardMarket(null);
+            }
+        }
+
+        int written = new CollectionExporter(source.repository()).export(file, CollectionExporter.Format.JSON_LINES,
+                count -> {
+                });
+        CollectionImporter.ImportResult result = importer().importFile(file, (read, total, imported) -> {
+        });
+
+        assertEquals(new CollectionImporter.ImportResult(written, written, 0, List.of()), result);
+        assertEquals(List.copyOf(source.cards.values()), List.copyOf(target.cards.values()));
+    }
+
+    @Test
+    void csvFieldsAreQuotedOnlyWhenNeeded() throws IOException {
+        Path file = directory.resolve("collection.csv");
+
+        new CollectionExporter(source.repository()).export(file, CollectionExporter.Format.CSV, count -> {
+        });
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(String.join(",", CollectionExporter.CSV_COLUMNS), lines.get(0));
+        assertTrue(lines.get(1).startsWith("base1-4,Charizard,Pokémon,Stage 2,Fire,4,Rare Holo,base1,Base,Base,"),
+                lines.get(1));
+        assertTrue(lines.get(2).startsWith("\"xy-\"\"quoted\"\"\",\"Mr. \"\"Mime\"\", the, comma\","), lines.get(2));
+    }
+
+    @Test
+    void cardsWithoutOptionalFieldsSurviveBothFormats() throws IOException {
+        Card sparse = new Card();
+        sparse.setId("sparse-1");
+        sparse.setName("Sparse");
+        source.cards.clear();
+        source.cards.put(sparse.getId(), sparse);
+
+        for (CollectionExporter.Format format : CollectionExporter.Format.values()) {
+            target.cards.clear();
+            targetIndex = new CollectionIndex();
+            Path file = directory.resolve("sparse." + (format == CollectionExporter.Format.CSV ? "csv" : "jsonl"));
+            new CollectionExporter(source.repository()).export(file, format, count -> {
+            });
+
+            importer().importFile(file, (read, total, imported) -> {
+            });
+
+            Card imported = target.cards.get("sparse-1");
+            assertEquals("Sparse", imported.getName(), format.name());
+            assertNull(imported.getRarity(), format.name());
+            assertTrue(imported.getSubtypes() == null || imported.getSubtypes().isEmpty(), format.name());
+            assertTrue(imported.getCardMarket() == null || imported.getCardMarket().getPriceInfo().getAverageSellPrice() == null,
+                    format.name());
+        }
+    }
+
+    @Test
+    void ownedAndRepeatedCardsAreNotImportedAgain() throws IOException {
+        Path file = directory.resolve("collection.jsonl");
+        new CollectionExporter(source.repository()).export(file, CollectionExporter.Format.JSON_LINES, count -> {
+        });
+        Files.writeString(file, Files.readAllLines(file).get(0) + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+        Card owned = source.cards.values().iterator().next();
+        target.cards.put(owned.getId(), owned);
+        targetIndex.add(owned.getId());
+
+        CollectionImporter.ImportResult result = importer().importFile(file, (read, total, imported) -> {
+        });
+
+        assertEquals(source.cards.size(), result.requested());
+        assertEquals(1, result.alreadyOwned());
+        assertEquals(source.cards.size() - 1, result.imported());
+    }
+
+    @Test
+    void cardsOwnedBeforeTheirChunkIsWrittenCountAsAlreadyOwned() throws IOException {
+        Path file = directory.resolve("collection.csv");
+        new CollectionExporter(source.repository()).export(file, CollectionExporter.Format.CSV, count -> {
+        });
+        Card addedByHand = source.cards.values().iterator().next();
+        // A change still queued when the first chunk is written, flushed after the card was read
+        targetWriter.add(addedByHand);
+        target.afterWrite = () -> targetIndex.add(addedByHand.getId());
+
+        CollectionImporter.ImportResult result = importer().importFile(file, (read, total, imported) -> {
+        });
+
+        assertEquals(source.cards.size(), result.requested());
+        assertEquals(1, result.alreadyOwned());
+        assertEquals(source.cards.size() - 1, result.imported());
+        assertEquals(result.requested(), result.imported() + result.alreadyOwned());
+    }
+
+    @Test
+    void malformedJsonLinesAreReported() throws IOException {
+        Path file = directory.resolve("broken.jsonl");
+        Files.writeString(file, "{\"id\": \"a\", \"cardmarket\": {\"prices\": {\"averageSellPrice\": \"cheap\"}}}\n");
+
+        assertThrows(IOException.class, () -> importer().importFile(file, (read, total, imported) -> {
+        }));
+    }
+
+    @Test
+    void listSeparatorsInsideValuesAreEscaped() {
+        List<String> values = List.of("Stage 2", "a|b", "back\\slash", "\\|", "");
+
+        String joined = CollectionExporter.joinList(values);
+
+        assertEquals("Stage 2|a\\|b|back\\\\slash|\\\\\\||", joined);
+        assertEquals(values, CollectionExporter.splitList(joined));
+        assertEquals(List.of(), CollectionExporter.splitList(""));
+        assertEquals(List.of(), CollectionExporter.splitList(null));
+        assertNull(CollectionExporter.joinList(null));
+    }
+
+    private CollectionImporter importer() {
+        return new CollectionImporter(target.repository(), targetIndex, targetWriter, importedChunks::addAll);
+    }
+
+    private static List<Card> cards() {
+        List<Card> cards = new ArrayList<>();
+        cards.add(card("base1-4", "Charizard", List.of("Stage 2"), List.of("Fire"), "4", "Rare Holo",
+                new SetInfo("base1", "Base", "Base"), "350.00"));
+        // Quotes, commas, line breaks, list separators and backslashes in values
+        cards.add(card("xy-\"quoted\"", "Mr. \"Mime\", the, comma", List.of("Basic", "a|b", "c\\d"),
+                List.of("Psychic"), "12", "Promo", new SetInfo("xyp", "XY Black Star\nPromos", "XY"), "0.05"));
+        // Characters outside ASCII, no price
+        cards.add(card("sm1-1", "Flabébé ポケモン", List.of("Basic"), List.of("Fairy"), "1", "Common",
+                new SetInfo("sm1", "Sun & Moon", "Sun & Moon"), null));
+        for (int i = 0; i < 1_200; i++) {
+            cards.add(card("bulk-" + i, "Bulk " + i, List.of("Basic"), List.of("Colorless", "Water"), String.valueOf(i),
+                    "Common", new SetInfo("bulk", "Bulk", "Bulk Series"), i % 3 == 0 ? null : i + ".25"));
+        }
+        return cards;
+    }
+
+    private static Card card(String id, String name, List<String> subtypes, List<String> types, String number,
+                             String rarity, SetInfo setInfo, String price) {
+        Card card = new Card();
+        card.setId(id);
+        card.setName(name);
+        card.setSupertype("Pokémon");
+        card.setSubtypes(subtypes);
+        card.setTypes(types);
+        card.setNumber(number);
+        card.setRarity(rarity);
+        card.setSetInfo(setInfo);
+        card.setImageInfo(new ImageInfo("https://images.example/" + id + ".png",
+                "https://images.example/" + id + "_hires.png"));
+        card.setCardMarket(new CardMarket(new GermanPriceInfo(price != null ? new BigDecimal(price) : null)));
+        return card;
+    }
+}
@@ -0,0 +1,167 @@
+package database;
+
+import data.Card;
+import data.SetInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CollectionSearchIndexTest {
+    private CollectionSearchIndex index;
+
+    @BeforeEach
+    void createIndex() {
+        index = new CollectionSearchIndex();
+        index.add(card("sv3-125", "Charizard ex", "Obsidian Flames", "Scarlet & Violet", "Double Rare",
+                List.of("Stage 2", "ex"), List.of("Darkness")));
+        index.add(card("base1-4", "Charizard", "Base", "Base", "Rare Holo", List.of("Stage 2"), List.of("Fire")));
+        index.add(card("sm1-1", "Flabébé", "Sun & Moon", "Sun & Moon", "Common", List.of("Basic"), List.of("Fairy")));
+        index.add(card("swsh1-1", "Celebi V", "Sword & Shield", "Sword & Shield", "Rare Holo V",
+                List.of("Basic", "V"), List.of("Grass")));
+        index.add(card("base1-58", "Pikachu", "Base", "Base", "Common", List.of("Basic"), List.of("Lightning")));
+    }
+
+    @Test
+    void queryWordsMatchTheStartOfWords() {
+        assertEquals(List.of("base1-4", "sv3-125"), ids(index.search("char")));
+        assertEquals(List.of("sv3-125"), ids(index.search("char ex")));
+        assertEquals(List.of("sv3-125"), ids(index.search("obsid")));
+        assertEquals(List.of(), ids(index.search("harizard")));
+    }
+
+    @Test
+    void everyQueryWordHasToMatch() {
+        assertEquals(List.of("base1-58"), ids(index.search("base common")));
+        assertEquals(List.of("base1-4", "base1-58"), ids(index.search("base")));
+        assertEquals(List.of(), ids(index.search("pikachu fire")));
+    }
+
+    @Test
+    void setSeriesTypesSubtypesAndRarityAreSearchable() {
+        assertEquals(List.of("sv3-125"), ids(index.search("scarlet")));
+        assertEquals(List.of("base1-4"), ids(index.search("fire")));
+        assertEquals(List.of("swsh1-1", "sm1-1", "base1-58"), ids(index.search("basic")));
+        assertEquals(List.of("swsh1-1", "base1-4"), ids(index.search("holo")));
+        assertEquals(List.of("base1-4", "sv3-125"), ids(index.search("stage 2")));
+    }
+
+    @Test
+    void caseAndAccentsAreIgnored() {
+        assertEquals(List.of("sm1-1"), ids(index.search("FLABEBE")));
+        assertEquals(List.of("sm1-1"), ids(index.search("flabé")));
+        assertEquals(List.of("sv3-125"), ids(index.search("Charizard-EX")));
+    }
+
+    @Test
+    void cardIdsAreSearchable() {
+        assertEquals(List.of("base1-4", "base1-58"), ids(index.search("base1")));
+        assertEquals(List.of("sv3-125"), ids(index.search("sv3 125")));
+    }
+
+    @Test
+    void blankQueryFindsNothing() {
+        assertEquals(List.of(), index.search(""));
+        assertEquals(List.of(), index.search("  - "));
+    }
+
+    @Test
+    void removedCardsAreNoLongerFound() {
+        index.remove("base1-4");
+
+        assertEquals(List.of("sv3-125"), ids(index.search("char")));
+        assertEquals(List.of(), ids(index.search("fire")));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void addingACardAgainReindexesIt() {
+        index.add(card("base1-4", "Dark Charizard", "Team Rocket", "Base", "Rare Holo", List.of("Stage 2"),
+                List.of("Darkness")));
+
+        assertEquals(List.of("base1-4"), ids(index.search("rocket")));
+        assertEquals(List.of(), ids(index.search("fire")));
+        assertEquals(List.of("sv3-125", "base1-4"), ids(index.search("dark")));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void freedDocumentsAreReused() {
+        for (int round = 0; round < 100; round++) {
+            index.remove("base1-58");
+            index.add(card("base1-58", "Pikachu", "Base", "Base", "Common", List.of("Basic"), List.of("Lightning")));
+        }
+
+        assertEquals(List.of("base1-58"), ids(index.search("pika")));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void loadReadsSummariesSeriesSubtypesAndTypes() {
+        InMemoryCardRepository stored = new InMemoryCardRepository();
+        for (Card card : List.of(
+                card("sv3-125", "Charizard ex", "Obsidian Flames", "Scarlet & Violet", "Double Rare",
+                        List.of("Stage 2", "ex"), List.of("Darkness")),
+                card("base1-4", "Charizard", "Base", "Base", "Rare Holo", List.of("Stage 2"), List.of("Fire")))) {
+            stored.cards.put(card.getId(), card);
+        }
+        CollectionSearchIndex loaded = new CollectionSearchIndex();
+
+        loaded.load(stored.repository());
+
+        assertTrue(loaded.isLoaded());
+        assertEquals(List.of("sv3-125"), ids(loaded.search("scarlet")));
+        assertEquals(List.of("base1-4"), ids(loaded.search("fire")));
+        assertEquals(List.of("base1-4", "sv3-125"), ids(loaded.search("stage")));
+    }
+
+    @Test
+    void changesWhileLoadingWinOverTheStoredCards() {
+        InMemoryCardRepository stored = new InMemoryCardRepository();
+        stored.cards.put("base1-4", card("base1-4", "Charizard", "Base", "Base", "Rare Holo", null, null));
+        stored.cards.put("base1-58", card("base1-58", "Pikachu", "Base", "Base", "Common", null, null));
+        CollectionSearchIndex loading = new CollectionSearchIndex();
+        // Removed from the collection, its delete not written yet
+        loading.remove("base1-4");
+        // Changed while the old row is still stored
+        loading.add(card("base1-58", "Pikachu", "Jungle", "Base", "Common", null, null));
+
+        loading.load(stored.repository());
+
+        assertEquals(1, loading.size());
+        assertEquals(List.of(), ids(loading.search("charizard")));
+        assertEquals(List.of("base1-58"), ids(loading.search("jungle")));
+        assertEquals("Jungle", loading.search("pikachu").get(0).getSetInfo().getSetName());
+
+        // Once loaded, removes are final
+        loading.remove("base1-58");
+        assertEquals(0, loading.size());
+    }
+
+    @Test
+    void tokenizeSplitsOnEverythingButLettersAndDigits() {
+        assertEquals(Set.of("pokemon", "gx"), CollectionSearchIndex.tokenize("Pokémon-GX"));
+        assertEquals(Set.of("mr", "mime"), CollectionSearchIndex.tokenize("Mr. Mime"));
+        assertEquals(Set.of(), CollectionSearchIndex.tokenize(null));
+    }
+
+    private static Card card(String id, String name, String setName, String series, String rarity,
+                             List<String> subtypes, List<String> types) {
+        Card card = new Card();
+        card.setId(id);
+        card.setName(name);
+        card.setRarity(rarity);
+        card.setSetInfo(new SetInfo(null, setName, series));
+        card.setSubtypes(subtypes);
+        card.setTypes(types);
+        return card;
+    }
+
+    private static List<String> ids(List<Card> cards) {
+        return cards.stream().map(Card::getId).toList();
+    }
+}
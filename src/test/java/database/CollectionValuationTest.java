@@ -0,0 +1,165 @@
+package database;
+
+import data.Card;
+import data.CardMarket;
+import data.GermanPriceInfo;
+import data.SetInfo;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CollectionValuationTest {
+    private static final List<String> SETS = List.of("Base", "Jungle", "Fossil");
+    private static final List<String> RARITIES = List.of("Common", "Uncommon", "Rare Holo");
+
+    @Test
+    void totalsCountCardsWithAndWithoutPrices() {
+        CollectionValuation valuation = new CollectionValuation();
+
+        valuation.put(card("a", "Base", "Common", "1.50"));
+        valuation.put(card("b", "Base", "Rare Holo", "20.25"));
+        valuation.put(card("c", "Jungle", null, null));
+
+        assertEquals(new CollectionValuation.Totals(2_175, 3, 2), valuation.total());
+        assertEquals(new BigDecimal("21.75"), valuation.total().value());
+        assertEquals(List.of("Base", "Jungle"), List.copyOf(valuation.bySet().keySet()));
+        assertEquals(new CollectionValuation.Totals(0, 1, 0), valuation.byRarity().get("Unknown"));
+    }
+
+    @Test
+    void incrementalTotalsMatchARecompute() {
+        Random random = new Random(42);
+        InMemoryCardRepository stored = new InMemoryCardRepository();
+        CollectionValuation valuation = new CollectionValuation();
+        for (int step = 0; step < 2_000; step++) {
+            String id = "card-" + random.nextInt(60);
+            switch (random.nextInt(4)) {
+                case 0, 1 -> {
+                    Card card = randomCard(random, id);
+                    stored.cards.put(id, card);
+                    valuation.put(card);
+                }
+                case 2 -> {
+                    stored.cards.remove(id);
+                    valuation.remove(id);
+                }
+                default -> {
+                    BigDecimal price = randomPrice(random);
+                    Card card = stored.cards.get(id);
+                    if (card != null) {
+                        card.getCardMarket().getPriceInfo().setAverageSellPrice(price);
+                    }
+                    valuation.setPrice(id, price);
+                }
+            }
+            if (step % 100 == 99) {
+                assertSameTotals(recomputed(stored), valuation);
+            }
+        }
+        assertSameTotals(recomputed(stored), valuation);
+    }
+
+    @Test
+    void recomputeReplacesTheCurrentTotals() {
+        InMemoryCardRepository stored = new InMemoryCardRepository();
+        stored.cards.put("a", card("a", "Base", "Common", "2.00"));
+        CollectionValuation valuation = new CollectionValuation();
+        valuation.put(card("gone", "Jungle", "Rare Holo", "50.00"));
+
+        valuation.recompute(stored.repository());
+
+        assertEquals(new CollectionValuation.Totals(200, 1, 1), valuation.total());
+        assertFalse(valuation.bySet().containsKey("Jungle"));
+    }
+
+    @Test
+    void changesDuringARecomputeAreKept() {
+        InMemoryCardRepository stored = new InMemoryCardRepository();
+        stored.cards.put("a", card("a", "Base", "Common", "2.00"));
+        stored.cards.put("b", card("b", "Base", "Common", "3.00"));
+        stored.cards.put("c", card("c", "Jungle", "Rare Holo", "10.00"));
+        CollectionValuation valuation = new CollectionValuation();
+        valuation.putAll(stored.cards.values());
+        // Made after the summaries were read, before the totals were replaced
+        stored.afterSummariesRead = () -> {
+            valuation.remove("a");
+            valuation.put(card("d", "Fossil", "Uncommon", "0.50"));
+            valuation.setPrice("c", new BigDecimal("12.00"));
+        };
+
+        valuation.recompute(stored.repository());
+
+        assertEquals(new CollectionValuation.Totals(1_550, 3, 3), valuation.total());
+        assertNull(valuation.price("a"));
+        assertEquals(new BigDecimal("12.00"), valuation.price("c"));
+    }
+
+    @Test
+    void priceChangesAreDetectedToTheCent() {
+        CollectionValuation valuation = new CollectionValuation();
+        valuation.put(card("a", "Base", "Common", "1.5"));
+
+        assertEquals(new BigDecimal("1.50"), valuation.price("a"));
+        assertFalse(valuation.isPriceChanged("a", new BigDecimal("1.500")));
+        assertTrue(valuation.isPriceChanged("a", new BigDecimal("1.51")));
+        assertTrue(valuation.isPriceChanged("a", null));
+        assertFalse(valuation.isPriceChanged("unknown", BigDecimal.ONE));
+    }
+
+    @Test
+    void setPriceIgnoresCardsThatAreNotCounted() {
+        CollectionValuation valuation = new CollectionValuation();
+
+        valuation.setPrice("a", BigDecimal.TEN);
+
+        assertEquals(new CollectionValuation.Totals(0, 0, 0), valuation.total());
+    }
+
+    private static CollectionValuation recomputed(InMemoryCardRepository stored) {
+        CollectionValuation valuation = new CollectionValuation();
+        valuation.recompute(stored.repository());
+        return valuation;
+    }
+
+    private static void assertSameTotals(CollectionValuation expected, CollectionValuation actual) {
+        assertEquals(expected.total(), actual.total());
+        assertEquals(expected.bySet(), actual.bySet());
+        assertEquals(expected.byRarity(), actual.byRarity());
+        // Ties may come in either order, the order of distinct values may not
+        assertEquals(values(expected), values(actual));
+    }
+
+    private static List<Long> values(CollectionValuation valuation) {
+        List<Long> values = new ArrayList<>();
+        valuation.bySet().values().forEach(totals -> values.add(totals.valueCents()));
+        return values;
+    }
+
+    private static Card randomCard(Random random, String id) {
+        Card card = card(id, SETS.get(random.nextInt(SETS.size())), RARITIES.get(random.nextInt(RARITIES.size())), null);
+        card.getCardMarket().getPriceInfo().setAverageSellPrice(randomPrice(random));
+        return card;
+    }
+
+    private static BigDecimal randomPrice(Random random) {
+        return random.nextInt(5) == 0 ? null : BigDecimal.valueOf(random.nextInt(10_000), 2);
+    }
+
+    private static Card card(String id, String set, String rarity, String price) {
+        Card card = new Card();
+        card.setId(id);
+        card.setName(id);
+        card.setRarity(rarity);
+        card.setSetInfo(new SetInfo(null, set, null));
+        card.setCardMarket(new CardMarket(new GermanPriceInfo(price != null ? new BigDecimal(price) : null)));
+        return card;
+    }
+}
@@ -0,0 +1,139 @@
+package database;
+
+import data.Card;
+import data.CardMarket;
+import data.GermanPriceInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CollectionWriterTest {
+    private InMemoryCardRepository stored;
+    private CollectionWriter writer;
+    private final List<CollectionWriter.Change> failed = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void createWriter() {
+        stored = new InMemoryCardRepository();
+        writer = new CollectionWriter(stored.repository());
+        writer.setFailureListener((changes, error) -> failed.addAll(changes));
+    }
+
+    @AfterEach
+    void stopWriter() throws InterruptedException {
+        stored.writeFailure = null;
+        writer.destroy();
+    }
+
+    @Test
+    void latestChangePerCardIsWritten() throws InterruptedException {
+        stored.cards.put("kept", card("kept", "1.00"));
+        stored.cards.put("deleted", card("deleted", "2.00"));
+
+        writer.add(card("added", "3.00"));
+        writer.delete(card("deleted", "2.00"));
+        writer.delete(card("kept", "1.00"));
+        writer.add(card("kept", "1.50"));
+        writer.add(card("transient", "4.00"));
+        writer.delete(card("transient", "4.00"));
+        writer.flush();
+
+        assertEquals(List.of("kept", "added"), List.copyOf(stored.cards.keySet()));
+        assertEquals(new BigDecimal("1.50"), price(stored.cards.get("kept")));
+        assertTrue(failed.isEmpty());
+    }
+
+    @Test
+    void failedDeleteThenAddOfAStoredCardRestoresTheStoredCard() throws InterruptedException {
+        stored.cards.put("a", card("a", "1.00"));
+        stored.writeFailure = new IllegalStateException("disk full");
+
+        writer.delete(card("a", "1.00"));
+        Card readded = card("a", "1.25");
+        writer.add(readded);
+        writer.flush();
+
+        assertEquals(1, failed.size());
+        CollectionWriter.Change change = failed.get(0);
+        assertSame(readded, change.card());
+        assertTrue(change.save());
+        assertTrue(change.wasStored(), "the database still holds the card");
+        assertEquals(new BigDecimal("1.00"), change.previousPrice());
+    }
+
+    @Test
+    void failedAddThenDeleteOfANewCardLeavesItUnowned() throws InterruptedException {
+        stored.writeFailure = new IllegalStateException("disk full");
+
+        writer.add(card("a", "1.00"));
+        writer.delete(card("a", "1.00"));
+        writer.flush();
+
+        assertEquals(1, failed.size());
+        assertFalse(failed.get(0).save());
+        assertFalse(failed.get(0).wasStored(), "the database never held the card");
+    }
+
+    @Test
+    void failedUpdateKeepsThePriceTheCardIsStoredWith() throws InterruptedException {
+        stored.writeFailure = new IllegalStateException("disk full");
+
+        writer.update(card("a", "1.10"), new BigDecimal("1.00"));
+        writer.update(card("a", "1.20"), new BigDecimal("1.10"));
+        writer.flush();
+
+        assertEquals(1, failed.size());
+        assertTrue(failed.get(0).wasStored());
+        assertEquals(new BigDecimal("1.00"), failed.get(0).previousPrice());
+    }
+
+    @Test
+    void failedUpdateOfAPendingAddLeavesTheCardUnowned() throws InterruptedException {
+        stored.writeFailure = new IllegalStateException("disk full");
+
+        writer.add(card("a", "1.00"));
+        writer.update(card("a", "1.10"), new BigDecimal("1.00"));
+        writer.flush();
+
+        assertEquals(1, failed.size());
+        assertFalse(failed.get(0).wasStored());
+        assertNull(failed.get(0).previousPrice());
+    }
+
+    @Test
+    void changesQueuedAfterAFailedBatchSupersedeIt() throws InterruptedException {
+        stored.writeFailure = new IllegalStateException("disk full");
+        writer.add(card("a", "1.00"));
+        writer.flush();
+        failed.clear();
+        stored.writeFailure = null;
+
+        writer.add(card("a", "1.00"));
+        writer.flush();
+
+        assertTrue(stored.cards.containsKey("a"));
+        assertTrue(failed.isEmpty());
+    }
+
+    private static Card card(String id, String price) {
+        Card card = new Card();
+        card.setId(id);
+        card.setName(id);
+        card.setCardMarket(new CardMarket(new GermanPriceInfo(new BigDecimal(price))));
+        return card;
+    }
+
+    private static BigDecimal price(Card card) {
+        return card.getCardMarket().getPriceInfo().getAverageSellPrice();
+    }
+}
@@ -0,0 +1,115 @@
+package database;
+
+import data.Card;
+import data.CardSummary;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A CardRepository backed by a map, implementing the queries the collection classes use.
+ * Calling any other repository method fails the test.
+ */
+final class InMemoryCardRepository implements InvocationHandler {
+    // Stored cards in insertion order
+    final Map<String, Card> cards = new LinkedHashMap<>();
+    // Runs after findSummaries has read the cards, to make changes while a load is in progress
+    Runnable afterSummariesRead = () -> {
+    };
+    // Thrown by saveAndDeleteAll instead of writing, when set
+    volatile RuntimeException writeFailure;
+    // Runs after saveAndDeleteAll has written, to make changes while queued collection changes are flushed
+    volatile Runnable afterWrite = () -> {
+    };
+
+    /**
+     * @return A CardRepository reading from and writing to this map
+     */
+    CardRepository repository() {
+        return (CardRepository) Proxy.newProxyInstance(CardRepository.class.getClassLoader(),
+                new Class<?>[]{CardRepository.class}, this);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "findAllIds":
+                return new ArrayList<>(cards.keySet());
+            case "findAllSubtypes":
+                return pairs(Card::getSubtypes);
+            case "findAllTypes":
+                return pairs(Card::getTypes);
+            case "findAllSetSeries": {
+                Set<List<String>> sets = new LinkedHashSet<>();
+                cards.values().forEach(card -> sets.add(Arrays.asList(card.getSetInfo().getSetName(),
+                        card.getSetInfo().getSeries())));
+                return sets.stream().map(set -> new Object[]{set.get(0), set.get(1)}).toList();
+            }
+            case "findSummaries": {
+                List<CardSummary> summaries = cards.values().stream().map(InMemoryCardRepository::summary).toList();
+                afterSummariesRead.run();
+                return summaries;
+            }
+            case "forEachCard":
+                cards.values().forEach((Consumer<Card>) args[0]);
+                return null;
+            case "insertAll":
+                for (Card card : (Collection<Card>) args[0]) {
+                    if (cards.putIfAbsent(card.getId(), card) != null) {
+                        throw new IllegalStateException("Duplicate primary key " + card.getId());
+                    }
+                }
+                return null;
+            case "saveAndDeleteAll":
+                if (writeFailure != null) {
+                    throw writeFailure;
+                }
+                synchronized (cards) {
+                    for (Card card : (Collection<Card>) args[0]) {
+                        cards.put(card.getId(), card);
+                    }
+                    cards.keySet().removeAll((Collection<String>) args[1]);
+                }
+                afterWrite.run();
+                return null;
+            case "toString":
+                return "InMemoryCardRepository" + cards.keySet();
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private List<Object[]> pairs(Function<Card, List<String>> values) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Card card : cards.values()) {
+            if (values.apply(card) != null) {
+                values.apply(card).forEach(value -> rows.add(new Object[]{card.getId(), value}));
+            }
+        }
+        return rows;
+    }
+
+    private static CardSummary summary(Card card) {
+        return new CardSummary(card.getId(), card.getName(),
+                card.getSetInfo() != null ? card.getSetInfo().getSetName() : null, card.getRarity(),
+                card.getImageInfo() != null ? card.getImageInfo().getSmall() : null,
+                card.getCardMarket() != null && card.getCardMarket().getPriceInfo() != null
+                        ? card.getCardMarket().getPriceInfo().getAverageSellPrice() : null);
+    }
+}
@@ -0,0 +1,187 @@
+package database;
+
+import data.PricePoint;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriceHistoryStoreTest {
+    private static final long DAY = 86_400;
+    private static final long WEEK = 7 * DAY;
+    // A Monday at midnight UTC, where both daily and weekly buckets start
+    private static final long START = 4 * DAY + 2_800 * WEEK;
+
+    private JdbcTemplate jdbc;
+    private PriceHistoryStore store;
+
+    @BeforeEach
+    void createStore() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        SchemaMigrations.migrate(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        store = new PriceHistoryStore(dataSource, new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    void destroyStore() throws InterruptedException {
+        store.destroy();
+        jdbc.execute("shutdown");
+    }
+
+    @Test
+    void encodedSegmentsDecodeToTheSamePoints() {
+        List<PricePoint> points = List.of(
+                new PricePoint(START, 12_345),
+                new PricePoint(START, 12_345),
+                new PricePoint(START + 1, 0),
+                new PricePoint(START + 3_600, 99),
+                new PricePoint(START + 400 * DAY, 5_000_000_000L),
+                new PricePoint(START + 401 * DAY, 1));
+
+        byte[] data = PriceHistoryStore.encode(points);
+
+        assertEquals(points, PriceHistoryStore.decode(START, data));
+    }
+
+    @Test
+    void smallChangesTakeAFewBytesPerPoint() {
+        List<PricePoint> points = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            points.add(new PricePoint(START + i * DAY, 2_000 + (i % 2 == 0 ? 25 : -25)));
+        }
+
+        byte[] data = PriceHistoryStore.encode(points);
+
+        // Time deltas of a day need three bytes, cent deltas of 50 one
+        assertTrue(data.length <= 4 * points.size(), data.length + " bytes");
+        assertEquals(points, PriceHistoryStore.decode(START, data));
+    }
+
+    @Test
+    void recordedPricesAreReadBackInOrder() {
+        store.recordAt(START, Map.of("a", 100L, "b", 500L));
+        store.recordAt(START + 3_600, Map.of("a", 120L));
+        store.recordAt(START + 7_200, Map.of("a", 90L));
+
+        assertEquals(List.of(new PricePoint(START, 100), new PricePoint(START + 3_600, 120),
+                new PricePoint(START + 7_200, 90)), store.history("a", 0, Long.MAX_VALUE, 100));
+        assertEquals(List.of(new PricePoint(START, 500)), store.history("b", 0, Long.MAX_VALUE, 100));
+        assertEquals(List.of(new PricePoint(START + 3_600, 120)), store.history("a", START + 1, START + 3_600, 100));
+    }
+
+    @Test
+    void unchangedPriceIsOnlyRecordedOncePerDay() {
+        store.recordAt(START, Map.of("a", 100L));
+        store.recordAt(START + 3_600, Map.of("a", 100L));
+        store.recordAt(START + DAY, Map.of("a", 100L));
+
+        assertEquals(List.of(new PricePoint(START, 100), new PricePoint(START + DAY, 100)),
+                store.history("a", 0, Long.MAX_VALUE, 100));
+    }
+
+    @Test
+    void fullSegmentsAreFollowedByNewOnes() {
+        List<PricePoint> expected = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            long cents = 1_000 + (i * 37) % 200;
+            store.recordAt(START + i * 3_600L, Map.of("a", cents));
+            expected.add(new PricePoint(START + i * 3_600L, cents));
+        }
+
+        Integer segments = jdbc.queryForObject(
+                "select count(*) from price_history_segment where card_id = 'a'", Integer.class);
+        assertTrue(segments >= 3, segments + " segments");
+        assertEquals(expected, store.history("a", 0, Long.MAX_VALUE, 1_000));
+    }
+
+    @Test
+    void rawPointsOlderThanTheRetentionBecomeDailyMeans() {
+        // Five days of hourly prices, 100 cents rising by one every hour
+        List<PricePoint> hourly = new ArrayList<>();
+        for (int hour = 0; hour < 5 * 24; hour++) {
+            store.recordAt(START + hour * 3_600L, Map.of("a", 100L + hour));
+            hourly.add(new PricePoint(START + hour * 3_600L, 100 + hour));
+        }
+
+        // The first three days are past the 30 day retention
+        long now = START + 33 * DAY + 100;
+        store.rollUpAt(now);
+
+        List<PricePoint> expected = new ArrayList<>();
+        for (int day = 0; day < 3; day++) {
+            // The mean of 100 + 24 * day ... 123 + 24 * day, rounded half up
+            expected.add(new PricePoint(START + day * DAY, 112 + 24 * day));
+        }
+        expected.addAll(hourly.subList(3 * 24, hourly.size()));
+        assertEquals(expected, store.history("a", 0, Long.MAX_VALUE, 1_000));
+
+        // Nothing else is old enough yet
+        store.rollUpAt(now);
+        assertEquals(expected, store.history("a", 0, Long.MAX_VALUE, 1_000));
+
+        // A day later the fourth day follows the other three
+        store.rollUpAt(now + DAY);
+        expected.subList(3, 3 + 24).clear();
+        expected.add(3, new PricePoint(START + 3 * DAY, 112 + 24 * 3));
+        assertEquals(expected, store.history("a", 0, Long.MAX_VALUE, 1_000));
+    }
+
+    @Test
+    void dailyPointsOlderThanTheRetentionBecomeWeeklyMeans() {
+        for (int day = 0; day < 30; day++) {
+            store.recordAt(START + day * DAY, Map.of("a", 100L + day));
+        }
+
+        // Every snapshot is past the raw retention, the first two weeks are past the daily retention too
+        store.rollUpAt(START + 2 * WEEK + 365 * DAY + 100);
+
+        List<PricePoint> expected = new ArrayList<>();
+        expected.add(new PricePoint(START, 103));
+        expected.add(new PricePoint(START + WEEK, 110));
+        for (int day = 14; day < 30; day++) {
+            expected.add(new PricePoint(START + day * DAY, 100 + day));
+        }
+        assertEquals(expected, store.history("a", 0, Long.MAX_VALUE, 1_000));
+        Integer tiers = jdbc.queryForObject(
+                "select count(distinct tier) from price_history_segment where card_id = 'a'", Integer.class);
+        assertEquals(2, tiers);
+    }
+
+    @Test
+    void rollupLeavesRecentCardsAlone() {
+        store.recordAt(START, Map.of("old", 100L));
+        store.recordAt(START + 3_600, Map.of("old", 300L));
+        store.recordAt(START + 40 * DAY, Map.of("new", 200L));
+
+        store.rollUpAt(START + 40 * DAY);
+
+        assertEquals(List.of(new PricePoint(START, 200)), store.history("old", 0, Long.MAX_VALUE, 100));
+        assertEquals(List.of(new PricePoint(START + 40 * DAY, 200)), store.history("new", 0, Long.MAX_VALUE, 100));
+    }
+
+    @Test
+    void downsampleAveragesEqualTimeBuckets() {
+        List<PricePoint> points = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            points.add(new PricePoint(i * 10L, i * 100L));
+        }
+
+        List<PricePoint> sampled = PriceHistoryStore.downsample(points, 5);
+
+        assertEquals(List.of(new PricePoint(5, 50), new PricePoint(25, 250), new PricePoint(45, 450),
+                new PricePoint(65, 650), new PricePoint(85, 850)), sampled);
+        assertEquals(points, PriceHistoryStore.downsample(points, 10));
+    }
+}
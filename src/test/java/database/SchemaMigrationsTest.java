@@ -0,0 +1,111 @@
+package database;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaMigrationsTest {
+    private JdbcDataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void createDatabase() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbc.execute("shutdown");
+    }
+
+    @Test
+    void migrationsAreAppliedInVersionOrder() {
+        SchemaMigrations.migrate(dataSource);
+
+        List<Map<String, Object>> applied = jdbc.queryForList(
+                "select version, script from schema_version order by installed_on, version");
+        assertEquals(SchemaMigrations.latestVersion(), applied.size());
+        for (int i = 0; i < applied.size(); i++) {
+            assertEquals(i + 1, applied.get(i).get("VERSION"));
+            assertTrue(((String) applied.get(i).get("SCRIPT")).startsWith("V" + (i + 1) + "__"),
+                    applied.get(i).get("SCRIPT") + " is recorded as version " + (i + 1));
+        }
+    }
+
+    @Test
+    void migratedSchemaHasEveryTable() {
+        SchemaMigrations.migrate(dataSource);
+
+        List<String> tables = jdbc.queryForList("select lower(table_name) from information_schema.tables "
+                + "where table_schema = 'PUBLIC'", String.class);
+        assertTrue(tables.containsAll(List.of("card", "card_subtypes", "card_types", "price_history_segment",
+                "schema_version")), tables.toString());
+    }
+
+    @Test
+    void migratingAnUpToDateDatabaseChangesNothing() {
+        SchemaMigrations.migrate(dataSource);
+        jdbc.update("insert into card (id, name) values ('base1-4', 'Charizard')");
+
+        SchemaMigrations.migrate(dataSource);
+
+        assertEquals(SchemaMigrations.latestVersion(),
+                jdbc.queryForObject("select count(*) from schema_version", Integer.class));
+        assertEquals("Charizard", jdbc.queryForObject("select name from card where id = 'base1-4'", String.class));
+    }
+
+    @Test
+    void onlyMissingMigrationsAreApplied() {
+        SchemaMigrations.migrate(dataSource);
+        // A database left at version 2, as the build before the price history would leave it
+        jdbc.execute("drop table price_history_segment");
+        jdbc.update("delete from schema_version where version = 3");
+        jdbc.update("insert into card (id, name) values ('base1-4', 'Charizard')");
+
+        SchemaMigrations.migrate(dataSource);
+
+        assertEquals(List.of(1, 2, 3), jdbc.queryForList("select version from schema_version order by version",
+                Integer.class));
+        assertEquals(0, jdbc.queryForObject("select count(*) from price_history_segment", Integer.class));
+        assertEquals(1, jdbc.queryForObject("select count(*) from card", Integer.class));
+    }
+
+    @Test
+    void databaseCreatedBeforeMigrationsIsTakenOver() {
+        // The tables as Hibernate created them, without a schema_version table
+        jdbc.execute("create table card (id varchar(255) not null primary key, averagesellprice numeric(38, 2), "
+                + "image_large_url varchar(255), image_small_url varchar(255), name varchar(255), "
+                + "number varchar(255), rarity varchar(255), series varchar(255), setid varchar(255), "
+                + "setname varchar(255), supertype varchar(255))");
+        jdbc.update("insert into card (id, name) values ('base1-4', 'Charizard')");
+
+        SchemaMigrations.migrate(dataSource);
+
+        assertEquals(SchemaMigrations.latestVersion(),
+                jdbc.queryForObject("select max(version) from schema_version", Integer.class));
+        assertEquals("Charizard", jdbc.queryForObject("select name from card where id = 'base1-4'", String.class));
+    }
+
+    @Test
+    void newerDatabaseIsRejected() {
+        SchemaMigrations.migrate(dataSource);
+        jdbc.update("insert into schema_version (version, script) values (?, ?)",
+                SchemaMigrations.latestVersion() + 1, "V99__from_the_future.sql");
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> SchemaMigrations.migrate(dataSource));
+        assertTrue(error.getMessage().contains("newer"), error.getMessage());
+    }
+}
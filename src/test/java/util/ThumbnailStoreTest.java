@@ -0,0 +1,123 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThumbnailStoreTest {
+
+    @Test
+    void storedImagesDecodeToTheSamePixels() {
+        ThumbnailStore store = new ThumbnailStore(1 << 20, 64 * 1024);
+        BufferedImage gradient = gradient(40, 56, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage noise = noise(33, 17, 7);
+
+        assertTrue(store.put("gradient", gradient));
+        assertTrue(store.put("noise", noise));
+
+        assertSamePixels(gradient, store.get("gradient"));
+        assertSamePixels(noise, store.get("noise"));
+        assertNull(store.get("missing"));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void imagesOfOtherTypesKeepTheirColors() {
+        ThumbnailStore store = new ThumbnailStore(1 << 20, 64 * 1024);
+        BufferedImage rgb = gradient(20, 30, BufferedImage.TYPE_INT_RGB);
+
+        assertTrue(store.put("rgb", rgb));
+
+        assertSamePixels(rgb, store.get("rgb"));
+    }
+
+    @Test
+    void putReplacesTheImageStoredUnderAKey() {
+        ThumbnailStore store = new ThumbnailStore(1 << 20, 64 * 1024);
+        store.put("card", gradient(10, 10, BufferedImage.TYPE_INT_ARGB));
+        BufferedImage replacement = noise(12, 9, 3);
+
+        store.put("card", replacement);
+
+        assertSamePixels(replacement, store.get("card"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void fullStoreRecyclesTheOldestSegment() {
+        int segmentSize = 16 * 1024;
+        ThumbnailStore store = new ThumbnailStore(2L * segmentSize, segmentSize);
+        // Noise hardly compresses, so a few images fill a segment
+        int stored = 0;
+        while (store.get("image0") != null || stored == 0) {
+            assertTrue(store.put("image" + stored, noise(32, 32, stored)));
+            stored++;
+            assertTrue(stored < 100, "the first segment is never recycled");
+        }
+
+        String newest = "image" + (stored - 1);
+        assertNotNull(store.get(newest));
+        assertSamePixels(noise(32, 32, stored - 1), store.get(newest));
+        assertTrue(store.size() < stored);
+    }
+
+    @Test
+    void imageLargerThanASegmentIsRejected() {
+        ThumbnailStore store = new ThumbnailStore(1 << 20, 1024);
+
+        assertFalse(store.put("large", noise(64, 64, 1)));
+        assertNull(store.get("large"));
+    }
+
+    @Test
+    void clearDropsEveryImage() {
+        ThumbnailStore store = new ThumbnailStore(1 << 20, 64 * 1024);
+        store.put("a", gradient(8, 8, BufferedImage.TYPE_INT_ARGB));
+        store.put("b", gradient(8, 8, BufferedImage.TYPE_INT_ARGB));
+
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertNull(store.get("a"));
+    }
+
+    private static BufferedImage gradient(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int alpha = type == BufferedImage.TYPE_INT_ARGB ? 128 + x % 128 : 255;
+                image.setRGB(x, y, alpha << 24 | (x * 5 & 0xFF) << 16 | (y * 3 & 0xFF) << 8 | (x + y) & 0xFF);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage noise(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+}